@@ -1,7 +1,9 @@
 package com.sachin.agentic.rag;
 
+import com.sachin.agentic.rag.config.ChatModelFactory;
 import com.sachin.agentic.rag.graph.AgenticRagWorkflow;
 import com.sachin.agentic.rag.model.GraphState;
+import com.sachin.agentic.rag.model.IngestionReport;
 import com.sachin.agentic.rag.service.IngestionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,11 +22,14 @@ public class AgenticRagApplication implements CommandLineRunner {
     private final AgenticRagWorkflow workflow;
     private final IngestionService ingestionService;
     private final Environment environment;
+    private final ChatModelFactory chatModelFactory;
 
-    public AgenticRagApplication(AgenticRagWorkflow workflow, IngestionService ingestionService, Environment environment) {
+    public AgenticRagApplication(AgenticRagWorkflow workflow, IngestionService ingestionService, Environment environment,
+                                 ChatModelFactory chatModelFactory) {
         this.workflow = workflow;
         this.ingestionService = ingestionService;
         this.environment = environment;
+        this.chatModelFactory = chatModelFactory;
     }
 
     public static void main(String[] args) {
@@ -53,7 +58,9 @@ public class AgenticRagApplication implements CommandLineRunner {
         log.info("\n=== FINAL RESULT ===");
         log.info("Question: {}", result.getQuestion());
         log.info("Answer: {}", result.getGeneration());
+        log.info("Verified: {}", result.isVerified());
         log.info("===================\n");
+        log.info("Chat model usage:\n{}", chatModelFactory.usageReport());
 
     }
 
@@ -66,7 +73,10 @@ public class AgenticRagApplication implements CommandLineRunner {
                 "https://lilianweng.github.io/posts/2023-10-25-adv-attack-llm/"
         );
 
-        ingestionService.ingestUrls(urls);
-        log.info("Document ingestion completed!");
+        IngestionReport report = ingestionService.ingestUrls(urls);
+        log.info("Document ingestion completed: {}", report);
+        for (IngestionReport.Failure failure : report.getFailures()) {
+            log.warn("Failed to ingest {}", failure);
+        }
     }
 }
@@ -1,10 +1,9 @@
 package com.sachin.agentic.rag.chain;
 
+import com.sachin.agentic.rag.config.ChatModelFactory;
 import com.sachin.agentic.rag.model.GradeAnswer;
 import dev.langchain4j.model.chat.ChatLanguageModel;
-import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.service.AiServices;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
@@ -15,12 +14,8 @@ public class AnswerGrader {
 
     private final GraderService graderService;
 
-    public AnswerGrader(@Value("${openai.api.key}") String apiKey) {
-        ChatLanguageModel chatModel = OpenAiChatModel.builder()
-                .apiKey(apiKey)
-                .temperature(0.0)
-                .modelName("gpt-4")
-                .build();
+    public AnswerGrader(ChatModelFactory chatModelFactory) {
+        ChatLanguageModel chatModel = chatModelFactory.chatModel("answer-grader", 0.0);
 
         this.graderService = AiServices.create(GraderService.class, chatModel);
     }
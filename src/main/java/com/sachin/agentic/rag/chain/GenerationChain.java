@@ -1,9 +1,8 @@
 package com.sachin.agentic.rag.chain;
 
+import com.sachin.agentic.rag.config.ChatModelFactory;
 import dev.langchain4j.model.chat.ChatLanguageModel;
-import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.service.AiServices;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
@@ -14,12 +13,8 @@ public class GenerationChain {
 
     private final GeneratorService generatorService;
 
-    public GenerationChain(@Value("${openai.api.key}") String apiKey) {
-        ChatLanguageModel chatModel = OpenAiChatModel.builder()
-                .apiKey(apiKey)
-                .temperature(0.0)
-                .modelName("gpt-4")
-                .build();
+    public GenerationChain(ChatModelFactory chatModelFactory) {
+        ChatLanguageModel chatModel = chatModelFactory.chatModel("generator", 0.0);
 
         this.generatorService = AiServices.create(GeneratorService.class, chatModel);
     }
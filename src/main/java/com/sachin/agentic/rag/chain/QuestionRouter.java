@@ -1,32 +1,194 @@
 package com.sachin.agentic.rag.chain;
 
+import com.sachin.agentic.rag.config.ChatModelFactory;
+import com.sachin.agentic.rag.config.RoutingConfig;
 import com.sachin.agentic.rag.model.RouteQuery;
+import com.sachin.agentic.rag.store.MappedEmbeddingStore;
+import com.sachin.agentic.rag.store.TopicCentroids;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.chat.ChatLanguageModel;
-import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.service.AiServices;
-import org.springframework.beans.factory.annotation.Value;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.sachin.agentic.rag.model.GraphConstants.VECTORSTORE;
+import static com.sachin.agentic.rag.model.GraphConstants.WEBSEARCH;
+
 /**
- * Routes user questions to the appropriate datasource (vectorstore or web_search)
+ * Routes user questions to the appropriate datasource (vectorstore or web_search).
+ * <p>
+ * When centroid routing is enabled the question embedding is first compared with the topic
+ * centroids of the ingested corpus and with the closest stored segment. Clearly on- or off-topic
+ * questions are routed from that score alone; only the uncertain band in between asks the LLM.
+ * <p>
+ * Centroids are rebuilt on a background thread once the store changes, and routing keeps using the
+ * previous ones until the rebuild finishes, so no request waits for a scan of the corpus.
  */
 @Component
 public class QuestionRouter {
+    private static final Logger log = LoggerFactory.getLogger(QuestionRouter.class);
+
+    // Ingestion records each segment's source page here, so each page becomes a topic
+    private static final String TOPIC_METADATA_KEY = "url";
 
     private final RouterService routerService;
+    private final EmbeddingModel embeddingModel;
+    private final MappedEmbeddingStore embeddingStore;
+    private final RoutingConfig routingConfig;
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong llmDecisions = new AtomicLong();
+    private final AtomicLong centroidDecisions = new AtomicLong();
+    private final Timer centroidLatency;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
 
-    public QuestionRouter(@Value("${openai.api.key}") String apiKey) {
-        ChatLanguageModel chatModel = OpenAiChatModel.builder()
-                .apiKey(apiKey)
-                .temperature(0.0)
-                .modelName("gpt-4")
-                .build();
+    private volatile TopicCentroids centroids;
+
+    public QuestionRouter(ChatModelFactory chatModelFactory, EmbeddingModel embeddingModel,
+                          MappedEmbeddingStore embeddingStore, RoutingConfig routingConfig,
+                          MeterRegistry meterRegistry) {
+        ChatLanguageModel chatModel = chatModelFactory.chatModel("router", 0.0);
 
         this.routerService = AiServices.create(RouterService.class, chatModel);
+        this.embeddingModel = embeddingModel;
+        this.embeddingStore = embeddingStore;
+        this.routingConfig = routingConfig;
+        this.meterRegistry = meterRegistry;
+        this.centroidLatency = Timer.builder("routing.centroid.latency")
+                .description("Time to score a question against the corpus, excluding embedding it")
+                .register(meterRegistry);
+        Gauge.builder("routing.llm.fallback.ratio", this::fallbackRatio)
+                .description("Share of routing decisions that needed the LLM router")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether routing compares the question embedding with the corpus, so callers know it is worth
+     * computing up front.
+     */
+    public boolean usesQuestionEmbedding() {
+        return routingConfig.isCentroidEnabled();
     }
 
     public RouteQuery route(String question) {
-        return routerService.routeQuestion(question);
+        return route(question, null);
+    }
+
+    /**
+     * Routes the question, reusing its embedding when the caller already has one.
+     */
+    public RouteQuery route(String question, float[] questionEmbedding) {
+        if (routingConfig.isCentroidEnabled()) {
+            String datasource = routeByCentroids(question, questionEmbedding);
+            if (datasource != null) {
+                centroidDecisions.incrementAndGet();
+                meterRegistry.counter("routing.decisions", "method", "centroid", "datasource", datasource).increment();
+                return new RouteQuery(datasource);
+            }
+        }
+
+        RouteQuery route = routerService.routeQuestion(question);
+        llmDecisions.incrementAndGet();
+        meterRegistry.counter("routing.decisions", "method", "llm",
+                "datasource", String.valueOf(route.getDatasource())).increment();
+        return route;
+    }
+
+    /**
+     * Routes from embedding similarity alone, or returns {@code null} when the score falls in the
+     * uncertain band or cannot be computed.
+     */
+    private String routeByCentroids(String question, float[] questionEmbedding) {
+        Embedding embedding;
+        try {
+            embedding = questionEmbedding != null
+                    ? Embedding.from(questionEmbedding)
+                    : embeddingModel.embed(question).content();
+        } catch (RuntimeException e) {
+            log.warn("Could not embed question for centroid routing, asking the LLM router", e);
+            return null;
+        }
+
+        long start = System.nanoTime();
+        TopicCentroids snapshot = currentCentroids();
+        double score = topMatchScore(embedding);
+        if (snapshot != null) {
+            score = Math.max(score, RelevanceScore.fromCosineSimilarity(snapshot.maxSimilarity(embedding.vector())));
+        }
+        centroidLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (score >= routingConfig.getVectorstoreAbove()) {
+            log.info("Centroid router: relevance {} -> {}", score, VECTORSTORE);
+            return VECTORSTORE;
+        }
+        if (snapshot == null) {
+            // The closest segment alone can only rule a question in; a centroid might still match it
+            log.info("Centroid router: relevance {} without centroids yet, asking the LLM router", score);
+            return null;
+        }
+        if (score < routingConfig.getWebSearchBelow()) {
+            log.info("Centroid router: relevance {} -> {}", score, WEBSEARCH);
+            return WEBSEARCH;
+        }
+        log.info("Centroid router: relevance {} is uncertain, asking the LLM router", score);
+        return null;
+    }
+
+    private double topMatchScore(Embedding embedding) {
+        if (embeddingStore.size() == 0 || embeddingStore.dimension() != embedding.dimension()) {
+            return 0;
+        }
+        List<EmbeddingMatch<TextSegment>> matches = embeddingStore.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(embedding)
+                .maxResults(1)
+                .build()).matches();
+        return matches.isEmpty() ? 0 : matches.get(0).score();
+    }
+
+    /**
+     * Latest centroids, or {@code null} before the first ones are built. Once documents are added or
+     * removed a rebuild starts in the background and the previous centroids are served until it is done.
+     */
+    private TopicCentroids currentCentroids() {
+        TopicCentroids current = centroids;
+        if ((current == null || current.getStoreEpoch() != embeddingStore.getEpoch())
+                && rebuilding.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("topic-centroids").start(this::rebuildCentroids);
+        }
+        return current;
+    }
+
+    private void rebuildCentroids() {
+        try {
+            long start = System.nanoTime();
+            TopicCentroids rebuilt = TopicCentroids.compute(embeddingStore, TOPIC_METADATA_KEY);
+            centroids = rebuilt;
+            log.info("Computed {} topic centroids from {} segments in {} ms", rebuilt.getTopics().size(),
+                    rebuilt.getStoreSize(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("Could not compute topic centroids, keeping the previous ones", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private double fallbackRatio() {
+        long llm = llmDecisions.get();
+        long total = llm + centroidDecisions.get();
+        return total == 0 ? 0 : (double) llm / total;
     }
 
     interface RouterService {
@@ -1,12 +1,20 @@
 package com.sachin.agentic.rag.chain;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sachin.agentic.rag.config.ChatModelFactory;
+import com.sachin.agentic.rag.model.BatchGradeDocuments;
 import com.sachin.agentic.rag.model.GradeDocuments;
 import dev.langchain4j.model.chat.ChatLanguageModel;
-import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.service.AiServices;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
 /**
  * Grades the relevance of retrieved documents to the user question
  */
@@ -14,21 +22,79 @@ import org.springframework.stereotype.Component;
 public class RetrievalGrader {
 
     private final GraderService graderService;
+    private final BatchGraderService batchGraderService;
+    private final ObjectMapper objectMapper;
 
-    public RetrievalGrader(@Value("${openai.api.key}") String apiKey) {
-        ChatLanguageModel chatModel = OpenAiChatModel.builder()
-                .apiKey(apiKey)
-                .temperature(0.0)
-                .modelName("gpt-4")
-                .build();
+    public RetrievalGrader(ChatModelFactory chatModelFactory) {
+        ChatLanguageModel chatModel = chatModelFactory.chatModel("retrieval-grader", 0.0);
 
         this.graderService = AiServices.create(GraderService.class, chatModel);
+        this.batchGraderService = AiServices.create(BatchGraderService.class, chatModel);
+        this.objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     }
 
     public GradeDocuments grade(String document, String question) {
         return graderService.gradeDocument(document, question);
     }
 
+    /**
+     * Grades all documents in one call and returns their grades in document order.
+     *
+     * @throws IllegalStateException if the response is not a complete list of yes/no grades
+     */
+    public List<GradeDocuments> gradeBatch(List<String> documents, String question) {
+        StringBuilder numbered = new StringBuilder();
+        for (int i = 0; i < documents.size(); i++) {
+            numbered.append("<document index=\"").append(i).append("\">\n")
+                    .append(documents.get(i))
+                    .append("\n</document>\n\n");
+        }
+        return parseBatch(batchGraderService.gradeDocuments(numbered.toString(), question), documents.size());
+    }
+
+    List<GradeDocuments> parseBatch(String response, int expected) {
+        String json = response.strip();
+        // Models sometimes wrap JSON in a markdown code fence despite being told not to
+        if (json.startsWith("```")) {
+            int bodyStart = json.indexOf('\n') + 1;
+            int fenceEnd = json.lastIndexOf("```");
+            if (bodyStart == 0 || fenceEnd < bodyStart) {
+                throw new IllegalStateException("Batch grading response has an unterminated code fence");
+            }
+            json = json.substring(bodyStart, fenceEnd).strip();
+        }
+
+        BatchGradeDocuments batch;
+        try {
+            batch = objectMapper.readValue(json, BatchGradeDocuments.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Batch grading response is not valid JSON: " + e.getOriginalMessage(), e);
+        }
+        if (batch.getGrades() == null) {
+            throw new IllegalStateException("Batch grading response has no grades");
+        }
+
+        GradeDocuments[] grades = new GradeDocuments[expected];
+        for (BatchGradeDocuments.DocumentGrade grade : batch.getGrades()) {
+            int index = grade.getIndex();
+            String score = grade.getBinaryScore();
+            if (index < 0 || index >= expected || grades[index] != null) {
+                throw new IllegalStateException("Batch grading response has unexpected index " + index);
+            }
+            if (!"yes".equalsIgnoreCase(score) && !"no".equalsIgnoreCase(score)) {
+                throw new IllegalStateException("Batch grading response has invalid score '" + score + "'");
+            }
+            grades[index] = new GradeDocuments(score.toLowerCase(Locale.ROOT));
+        }
+        List<GradeDocuments> ordered = new ArrayList<>(Arrays.asList(grades));
+        if (ordered.contains(null)) {
+            throw new IllegalStateException("Batch grading response graded " + batch.getGrades().size()
+                    + " of " + expected + " documents");
+        }
+        return ordered;
+    }
+
     interface GraderService {
         @dev.langchain4j.service.SystemMessage("""
                 You are a grader assessing relevance of a retrieved document to user question.
@@ -44,4 +110,23 @@ public class RetrievalGrader {
         GradeDocuments gradeDocument(@dev.langchain4j.service.V("document") String document,
                                     @dev.langchain4j.service.V("question") String question);
     }
+
+    interface BatchGraderService {
+        @dev.langchain4j.service.SystemMessage("""
+                You are a grader assessing relevance of retrieved documents to user question.
+                Grade each document independently. If a document contains keyword(s) or semantic meaning
+                related to the question, grade it relevant.
+                Give each document a binary score 'yes' or 'no' to indicate whether it is relevant to the question.
+                Respond with only a JSON object, without a code block, in this form:
+                {"grades": [{"index": 0, "binaryScore": "yes"}, {"index": 1, "binaryScore": "no"}]}
+                Include exactly one entry for every document index.
+                """)
+        @dev.langchain4j.service.UserMessage("""
+                Retrieved documents:
+                {{documents}}
+                User question: {{question}}
+                """)
+        String gradeDocuments(@dev.langchain4j.service.V("documents") String documents,
+                              @dev.langchain4j.service.V("question") String question);
+    }
 }
@@ -0,0 +1,63 @@
+package com.sachin.agentic.rag.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for the answer caches in front of the workflow
+ */
+@Configuration
+public class CacheConfig {
+
+    @Value("${cache.exact.enabled:false}")
+    private boolean exactEnabled;
+
+    @Value("${cache.exact.max-entries:10000}")
+    private int exactMaxEntries;
+
+    @Value("${cache.exact.ttl-minutes:10}")
+    private int exactTtlMinutes;
+
+    @Value("${cache.semantic.enabled:false}")
+    private boolean semanticEnabled;
+
+    @Value("${cache.semantic.similarity-threshold:0.97}")
+    private double semanticSimilarityThreshold;
+
+    @Value("${cache.semantic.max-entries:1000}")
+    private int semanticMaxEntries;
+
+    @Value("${cache.semantic.ttl-minutes:60}")
+    private int semanticTtlMinutes;
+
+    public boolean isExactEnabled() {
+        return exactEnabled;
+    }
+
+    public int getExactMaxEntries() {
+        return Math.max(1, exactMaxEntries);
+    }
+
+    public int getExactTtlMinutes() {
+        return exactTtlMinutes;
+    }
+
+    public boolean isSemanticEnabled() {
+        return semanticEnabled;
+    }
+
+    /**
+     * Cosine similarity between two questions at or above which they share a cached answer.
+     */
+    public double getSemanticSimilarityThreshold() {
+        return semanticSimilarityThreshold;
+    }
+
+    public int getSemanticMaxEntries() {
+        return Math.max(1, semanticMaxEntries);
+    }
+
+    public int getSemanticTtlMinutes() {
+        return semanticTtlMinutes;
+    }
+}
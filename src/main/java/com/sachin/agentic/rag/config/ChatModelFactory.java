@@ -0,0 +1,109 @@
+package com.sachin.agentic.rag.config;
+
+import com.sachin.agentic.rag.model.ChatUsageReport;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the chat models used by the chains.
+ * <p>
+ * Each chain names its model, max tokens, timeout and token prices under {@code chat.<chain>.*}, so
+ * simple classifiers can run on a smaller, faster model than answer generation. Each OpenAiChatModel
+ * owns its own HTTP client and connection pool, so models are cached by their settings: chains with the
+ * same settings share one instance, and with it pooled keep-alive connections (HTTP/2 where the
+ * endpoint negotiates it) and TLS sessions.
+ */
+@Component
+public class ChatModelFactory {
+    private static final Logger log = LoggerFactory.getLogger(ChatModelFactory.class);
+
+    private static final String DEFAULT_MODEL_NAME = "gpt-4";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<ModelKey, ChatLanguageModel> models = new ConcurrentHashMap<>();
+    private final Map<String, MeteredChatModel> chains = new ConcurrentHashMap<>();
+
+    @Value("${openai.api.key}")
+    private String apiKey;
+
+    @Value("${openai.chat.base-url:https://api.openai.com/v1}")
+    private String baseUrl;
+
+    @Value("${openai.chat.timeout-seconds:60}")
+    private int timeoutSeconds;
+
+    @Value("${openai.chat.max-retries:2}")
+    private int maxRetries;
+
+    public ChatModelFactory(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns the chat model for a chain, configured by the {@code chat.<chain>.*} properties.
+     */
+    public ChatLanguageModel chatModel(String chain, double temperature) {
+        return chains.computeIfAbsent(chain, name -> {
+            String prefix = "chat." + name + ".";
+            ModelKey key = new ModelKey(
+                    modelName(name),
+                    temperature,
+                    environment.getProperty(prefix + "max-tokens", Integer.class),
+                    environment.getProperty(prefix + "timeout-seconds", Integer.class, timeoutSeconds));
+            log.info("Chain {} uses chat model {} (temperature {}, max tokens {}, timeout {}s)",
+                    name, key.modelName(), key.temperature(), key.maxTokens(), key.timeoutSeconds());
+            return new MeteredChatModel(name, key.modelName(), models.computeIfAbsent(key, this::create),
+                    environment.getProperty(prefix + "input-cost-per-1k-tokens", Double.class, 0.0),
+                    environment.getProperty(prefix + "output-cost-per-1k-tokens", Double.class, 0.0),
+                    meterRegistry);
+        });
+    }
+
+    /**
+     * The model a chain is configured to use.
+     */
+    public String modelName(String chain) {
+        return environment.getProperty("chat." + chain + ".model-name", DEFAULT_MODEL_NAME);
+    }
+
+    /**
+     * Latency, tokens and estimated cost per chain since startup, for tuning which chain runs on which model.
+     */
+    public ChatUsageReport usageReport() {
+        List<ChatUsageReport.ChainUsage> usage = new ArrayList<>();
+        for (MeteredChatModel chain : chains.values()) {
+            usage.add(chain.usage());
+        }
+        usage.sort((a, b) -> a.chain().compareTo(b.chain()));
+        return new ChatUsageReport(usage);
+    }
+
+    private ChatLanguageModel create(ModelKey key) {
+        return OpenAiChatModel.builder()
+                .apiKey(apiKey)
+                .baseUrl(baseUrl)
+                .modelName(key.modelName())
+                .temperature(key.temperature())
+                .maxTokens(key.maxTokens())
+                .timeout(Duration.ofSeconds(key.timeoutSeconds()))
+                .maxRetries(maxRetries)
+                .build();
+    }
+
+    private record ModelKey(String modelName, double temperature, Integer maxTokens, int timeoutSeconds) {
+    }
+}
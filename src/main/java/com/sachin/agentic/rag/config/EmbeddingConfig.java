@@ -0,0 +1,129 @@
+package com.sachin.agentic.rag.config;
+
+import com.sachin.agentic.rag.store.CachingEmbeddingModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Configuration for the embedding model shared by ingestion and retrieval.
+ * <p>
+ * The {@code openai} provider calls the OpenAI embeddings API; the {@code local} provider runs
+ * all-MiniLM-L6-v2 in-process with ONNX Runtime, so embedding needs no network round trip.
+ */
+@Configuration
+public class EmbeddingConfig {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingConfig.class);
+
+    private static final String LOCAL_MODEL_NAME = "all-minilm-l6-v2";
+
+    @Value("${embedding.provider:openai}")
+    private String provider;
+
+    @Value("${embedding.openai.model-name:text-embedding-ada-002}")
+    private String openAiModelName;
+
+    @Value("${embedding.local.threads:0}")
+    private int localThreads;
+
+    @Value("${embedding.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${embedding.cache.path:data/embedding-cache/embeddings.bin}")
+    private String cachePath;
+
+    @Value("${openai.api.key}")
+    private String openAiApiKey;
+
+    public Provider getProvider() {
+        return Provider.valueOf(provider.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public String getOpenAiModelName() {
+        return openAiModelName;
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    public String getCachePath() {
+        return cachePath;
+    }
+
+    public int getLocalThreads() {
+        return localThreads > 0 ? localThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Identifies the model behind {@link #embeddingModel(ExecutorService)}; recorded in the vector store so
+     * vectors from different models are never mixed.
+     */
+    public String getModelId() {
+        return switch (getProvider()) {
+            case OPENAI -> "openai:" + openAiModelName;
+            case LOCAL -> "local:" + LOCAL_MODEL_NAME;
+        };
+    }
+
+    /**
+     * Threads that run local ONNX inference. The ONNX session is thread-safe, so one model
+     * instance serves every caller and embedAll spreads a batch's segments across this pool.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService embeddingExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "embedding-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(getLocalThreads(), threadFactory);
+    }
+
+    @Bean
+    @Primary
+    public EmbeddingModel embeddingModel(ExecutorService embeddingExecutor) {
+        log.info("Using embedding model {}", getModelId());
+        return switch (getProvider()) {
+            case OPENAI -> OpenAiEmbeddingModel.builder()
+                    .apiKey(openAiApiKey)
+                    .modelName(openAiModelName)
+                    .build();
+            case LOCAL -> new AllMiniLmL6V2EmbeddingModel(embeddingExecutor);
+        };
+    }
+
+    /**
+     * Embedding model used by ingestion: the shared model behind a persistent content-hash cache,
+     * so re-ingesting unchanged segments does not embed them again. Queries bypass the cache.
+     */
+    @Bean
+    public EmbeddingModel ingestionEmbeddingModel(EmbeddingModel embeddingModel, MeterRegistry meterRegistry)
+            throws IOException {
+        if (!cacheEnabled) {
+            return embeddingModel;
+        }
+        return new CachingEmbeddingModel(embeddingModel, getModelId(), Path.of(cachePath), meterRegistry);
+    }
+
+    public enum Provider {
+        OPENAI,
+        LOCAL
+    }
+}
@@ -0,0 +1,116 @@
+package com.sachin.agentic.rag.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+
+/**
+ * Configuration for grading retrieved documents
+ */
+@Configuration
+public class GradingConfig {
+
+    @Value("${grading.mode:per-document}")
+    private String mode;
+
+    @Value("${grading.prefilter.enabled:false}")
+    private boolean prefilterEnabled;
+
+    @Value("${grading.prefilter.accept-above:0.93}")
+    private double acceptAbove;
+
+    @Value("${grading.prefilter.reject-below:0.85}")
+    private double rejectBelow;
+
+    @Value("${grading.early-exit.relevant-documents:0}")
+    private int earlyExitRelevantDocuments;
+
+    @Value("${grading.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${grading.cache.max-entries:50000}")
+    private int cacheMaxEntries;
+
+    @Value("${grading.cache.ttl-hours:24}")
+    private int cacheTtlHours;
+
+    @Value("${grading.cache.path:}")
+    private String cachePath;
+
+    @Value("${grading.concurrency:4}")
+    private int concurrency;
+
+    @Value("${grading.timeout-seconds:30}")
+    private int timeoutSeconds;
+
+    public Mode getMode() {
+        return Mode.valueOf(mode.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+
+    public boolean isPrefilterEnabled() {
+        return prefilterEnabled;
+    }
+
+    /**
+     * Retrieval score above which a document is accepted without asking the LLM.
+     */
+    public double getAcceptAbove() {
+        return acceptAbove;
+    }
+
+    /**
+     * Retrieval score below which a document is rejected without asking the LLM.
+     */
+    public double getRejectBelow() {
+        return rejectBelow;
+    }
+
+    /**
+     * Number of relevant documents after which per-document grading stops, or 0 to grade every document.
+     */
+    public int getEarlyExitRelevantDocuments() {
+        return Math.max(0, earlyExitRelevantDocuments);
+    }
+
+    /**
+     * Most grading calls in flight at once for one question.
+     */
+    public int getConcurrency() {
+        return Math.max(1, concurrency);
+    }
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    public int getCacheMaxEntries() {
+        return Math.max(1, cacheMaxEntries);
+    }
+
+    public int getCacheTtlHours() {
+        return cacheTtlHours;
+    }
+
+    /**
+     * File the verdict cache is persisted to, or empty to keep verdicts in memory only.
+     */
+    public String getCachePath() {
+        return cachePath;
+    }
+
+    public enum Mode {
+        /**
+         * One grading call per document, run concurrently
+         */
+        PER_DOCUMENT,
+        /**
+         * One grading call for all documents, falling back to per-document grading if its output is unusable
+         */
+        BATCH
+    }
+}
@@ -0,0 +1,63 @@
+package com.sachin.agentic.rag.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for the staged ingestion pipeline (fetch, parse, split, embed, store)
+ */
+@Configuration
+public class IngestionConfig {
+
+    @Value("${ingestion.fetch.max-concurrency:32}")
+    private int maxConcurrentFetches;
+
+    @Value("${ingestion.fetch.max-per-host:4}")
+    private int maxFetchesPerHost;
+
+    @Value("${ingestion.fetch.timeout-seconds:30}")
+    private int fetchTimeoutSeconds;
+
+    @Value("${ingestion.pipeline.parse-workers:0}")
+    private int parseWorkers;
+
+    @Value("${ingestion.pipeline.split-workers:1}")
+    private int splitWorkers;
+
+    @Value("${ingestion.pipeline.store-workers:1}")
+    private int storeWorkers;
+
+    @Value("${ingestion.pipeline.queue-capacity:64}")
+    private int queueCapacity;
+
+    /**
+     * Number of fetch workers, and so the most URLs downloaded at once.
+     */
+    public int getMaxConcurrentFetches() {
+        return Math.max(1, maxConcurrentFetches);
+    }
+
+    public int getMaxFetchesPerHost() {
+        return Math.max(1, maxFetchesPerHost);
+    }
+
+    public int getFetchTimeoutSeconds() {
+        return fetchTimeoutSeconds;
+    }
+
+    public int getParseWorkers() {
+        return parseWorkers > 0 ? parseWorkers : Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getSplitWorkers() {
+        return Math.max(1, splitWorkers);
+    }
+
+    public int getStoreWorkers() {
+        return Math.max(1, storeWorkers);
+    }
+
+    public int getQueueCapacity() {
+        return Math.max(1, queueCapacity);
+    }
+}
@@ -21,6 +21,15 @@ public class LangSmithConfig {
     @Value("${langsmith.endpoint:https://api.smith.langchain.com}")
     private String endpoint;
 
+    @Value("${langsmith.sampling.rate:1.0}")
+    private double samplingRate;
+
+    @Value("${langsmith.sampling.tail.enabled:true}")
+    private boolean tailSamplingEnabled;
+
+    @Value("${langsmith.sampling.tail.slow-threshold-millis:10000}")
+    private long slowThresholdMillis;
+
     public boolean isTracingEnabled() {
         return tracingEnabled;
     }
@@ -37,6 +46,25 @@ public class LangSmithConfig {
         return endpoint;
     }
 
+    /**
+     * Fraction of workflows traced in full, decided when each workflow starts.
+     */
+    public double getSamplingRate() {
+        return Math.min(1.0, Math.max(0.0, samplingRate));
+    }
+
+    /**
+     * Whether workflows not picked by the sampling rate are still traced when they turn out slow,
+     * failed or regenerated their answer.
+     */
+    public boolean isTailSamplingEnabled() {
+        return tailSamplingEnabled;
+    }
+
+    public long getSlowThresholdMillis() {
+        return slowThresholdMillis;
+    }
+
     public boolean isConfigured() {
         return tracingEnabled && apiKey != null && !apiKey.isEmpty();
     }
@@ -0,0 +1,83 @@
+package com.sachin.agentic.rag.config;
+
+import com.sachin.agentic.rag.model.ChatUsageReport;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A chain's view of a shared chat model that records the chain's call latency, token usage and
+ * estimated cost, so one model instance can serve several chains while their usage stays separate.
+ */
+class MeteredChatModel implements ChatLanguageModel {
+
+    private final String chain;
+    private final String modelName;
+    private final ChatLanguageModel delegate;
+    private final double inputCostPer1kTokens;
+    private final double outputCostPer1kTokens;
+    private final Timer latency;
+    private final Counter failures;
+    private final Counter inputTokens;
+    private final Counter outputTokens;
+    private final Counter cost;
+
+    MeteredChatModel(String chain, String modelName, ChatLanguageModel delegate, double inputCostPer1kTokens,
+                     double outputCostPer1kTokens, MeterRegistry meterRegistry) {
+        this.chain = chain;
+        this.modelName = modelName;
+        this.delegate = delegate;
+        this.inputCostPer1kTokens = inputCostPer1kTokens;
+        this.outputCostPer1kTokens = outputCostPer1kTokens;
+        this.latency = Timer.builder("chat.model.latency")
+                .tags("chain", chain, "model", modelName)
+                .description("Duration of chat model calls")
+                .register(meterRegistry);
+        this.failures = meterRegistry.counter("chat.model.failures", "chain", chain, "model", modelName);
+        this.inputTokens = meterRegistry.counter("chat.model.tokens", "chain", chain, "model", modelName,
+                "type", "input");
+        this.outputTokens = meterRegistry.counter("chat.model.tokens", "chain", chain, "model", modelName,
+                "type", "output");
+        this.cost = meterRegistry.counter("chat.model.cost", "chain", chain, "model", modelName);
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        long start = System.nanoTime();
+        try {
+            Response<AiMessage> response = delegate.generate(messages);
+            record(response.tokenUsage());
+            return response;
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    ChatUsageReport.ChainUsage usage() {
+        return new ChatUsageReport.ChainUsage(chain, modelName, latency.count(), (long) failures.count(),
+                latency.mean(TimeUnit.MILLISECONDS), latency.max(TimeUnit.MILLISECONDS),
+                (long) inputTokens.count(), (long) outputTokens.count(), cost.count());
+    }
+
+    private void record(TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        int input = usage.inputTokenCount() != null ? usage.inputTokenCount() : 0;
+        int output = usage.outputTokenCount() != null ? usage.outputTokenCount() : 0;
+        inputTokens.increment(input);
+        outputTokens.increment(output);
+        cost.increment(input / 1000.0 * inputCostPer1kTokens + output / 1000.0 * outputCostPer1kTokens);
+    }
+}
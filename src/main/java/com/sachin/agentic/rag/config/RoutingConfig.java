@@ -0,0 +1,38 @@
+package com.sachin.agentic.rag.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for routing questions to the vector store or web search
+ */
+@Configuration
+public class RoutingConfig {
+
+    @Value("${routing.centroid.enabled:false}")
+    private boolean centroidEnabled;
+
+    @Value("${routing.centroid.vectorstore-above:0.90}")
+    private double vectorstoreAbove;
+
+    @Value("${routing.centroid.web-search-below:0.86}")
+    private double webSearchBelow;
+
+    public boolean isCentroidEnabled() {
+        return centroidEnabled;
+    }
+
+    /**
+     * Relevance score at or above which a question is routed to the vector store without an LLM call.
+     */
+    public double getVectorstoreAbove() {
+        return vectorstoreAbove;
+    }
+
+    /**
+     * Relevance score below which a question is routed to web search without an LLM call.
+     */
+    public double getWebSearchBelow() {
+        return webSearchBelow;
+    }
+}
@@ -0,0 +1,89 @@
+package com.sachin.agentic.rag.config;
+
+import com.sachin.agentic.rag.store.MappedEmbeddingStore;
+import com.sachin.agentic.rag.store.MappedEmbeddingStore.SearchMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Configuration for the shared embedding store used by ingestion and retrieval
+ */
+@Configuration
+public class VectorStoreConfig {
+
+    @Value("${vectorstore.path:data/vectorstore}")
+    private String path;
+
+    @Value("${vectorstore.search.mode:exact}")
+    private String searchMode;
+
+    @Value("${vectorstore.search.shards:0}")
+    private int searchShards;
+
+    @Value("${vectorstore.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${vectorstore.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${vectorstore.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    @Value("${vectorstore.quantization.enabled:false}")
+    private boolean quantization;
+
+    @Value("${vectorstore.quantization.rerank-oversample:4}")
+    private int rerankOversample;
+
+    public String getPath() {
+        return path;
+    }
+
+    public SearchMode getSearchMode() {
+        return SearchMode.valueOf(searchMode.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public int getSearchShards() {
+        return searchShards;
+    }
+
+    public int getHnswM() {
+        return hnswM;
+    }
+
+    public int getHnswEfConstruction() {
+        return hnswEfConstruction;
+    }
+
+    public int getHnswEfSearch() {
+        return hnswEfSearch;
+    }
+
+    public boolean isQuantization() {
+        return quantization;
+    }
+
+    public int getRerankOversample() {
+        return rerankOversample;
+    }
+
+    @Bean(destroyMethod = "close")
+    public MappedEmbeddingStore embeddingStore(EmbeddingConfig embeddingConfig) throws IOException {
+        return MappedEmbeddingStore.builder()
+                .directory(Path.of(path))
+                .embeddingModelId(embeddingConfig.getModelId())
+                .searchMode(getSearchMode())
+                .searchShards(searchShards)
+                .hnswM(hnswM)
+                .hnswEfConstruction(hnswEfConstruction)
+                .hnswEfSearch(hnswEfSearch)
+                .quantization(quantization)
+                .rerankOversample(rerankOversample)
+                .build();
+    }
+}
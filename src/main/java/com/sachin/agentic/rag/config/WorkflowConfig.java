@@ -0,0 +1,31 @@
+package com.sachin.agentic.rag.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for the limits of a single workflow run
+ */
+@Configuration
+public class WorkflowConfig {
+
+    @Value("${workflow.max-generations:3}")
+    private int maxGenerations;
+
+    @Value("${workflow.deadline-seconds:120}")
+    private int deadlineSeconds;
+
+    /**
+     * Most answers generated for one question, counting the first.
+     */
+    public int getMaxGenerations() {
+        return Math.max(1, maxGenerations);
+    }
+
+    /**
+     * Wall-clock budget for one question, or 0 for no deadline.
+     */
+    public int getDeadlineSeconds() {
+        return Math.max(0, deadlineSeconds);
+    }
+}
@@ -3,6 +3,7 @@ package com.sachin.agentic.rag.graph;
 import com.sachin.agentic.rag.chain.AnswerGrader;
 import com.sachin.agentic.rag.chain.HallucinationGrader;
 import com.sachin.agentic.rag.chain.QuestionRouter;
+import com.sachin.agentic.rag.config.WorkflowConfig;
 import com.sachin.agentic.rag.model.GradeAnswer;
 import com.sachin.agentic.rag.model.GradeHallucinations;
 import com.sachin.agentic.rag.model.GraphState;
@@ -11,13 +12,24 @@ import com.sachin.agentic.rag.node.GenerateNode;
 import com.sachin.agentic.rag.node.GradeDocumentsNode;
 import com.sachin.agentic.rag.node.RetrieveNode;
 import com.sachin.agentic.rag.node.WebSearchNode;
+import com.sachin.agentic.rag.service.ExactMatchCache;
 import com.sachin.agentic.rag.service.LangSmithTracingService;
+import com.sachin.agentic.rag.service.SemanticAnswerCache;
+import com.sachin.agentic.rag.service.Trace;
+import com.sachin.agentic.rag.service.VectorStoreService;
+import com.sachin.agentic.rag.store.MappedEmbeddingStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static com.sachin.agentic.rag.model.GraphConstants.*;
@@ -37,11 +49,20 @@ public class AgenticRagWorkflow {
     private final HallucinationGrader hallucinationGrader;
     private final AnswerGrader answerGrader;
     private final LangSmithTracingService tracingService;
+    private final WorkflowConfig workflowConfig;
+    private final MeterRegistry meterRegistry;
+    private final ExactMatchCache exactMatchCache;
+    private final SemanticAnswerCache answerCache;
+    private final VectorStoreService vectorStoreService;
+    private final MappedEmbeddingStore embeddingStore;
 
     public AgenticRagWorkflow(QuestionRouter questionRouter, RetrieveNode retrieveNode,
                               GradeDocumentsNode gradeDocumentsNode, GenerateNode generateNode,
                               WebSearchNode webSearchNode, HallucinationGrader hallucinationGrader,
-                              AnswerGrader answerGrader, LangSmithTracingService tracingService) {
+                              AnswerGrader answerGrader, LangSmithTracingService tracingService,
+                              WorkflowConfig workflowConfig, MeterRegistry meterRegistry,
+                              ExactMatchCache exactMatchCache, SemanticAnswerCache answerCache,
+                              VectorStoreService vectorStoreService, MappedEmbeddingStore embeddingStore) {
         this.questionRouter = questionRouter;
         this.retrieveNode = retrieveNode;
         this.gradeDocumentsNode = gradeDocumentsNode;
@@ -50,18 +71,67 @@ public class AgenticRagWorkflow {
         this.hallucinationGrader = hallucinationGrader;
         this.answerGrader = answerGrader;
         this.tracingService = tracingService;
+        this.workflowConfig = workflowConfig;
+        this.meterRegistry = meterRegistry;
+        this.exactMatchCache = exactMatchCache;
+        this.answerCache = answerCache;
+        this.vectorStoreService = vectorStoreService;
+        this.embeddingStore = embeddingStore;
     }
 
     public GraphState invoke(String question) {
         log.info("Starting workflow for question: {}", question);
 
-        // Start LangSmith trace for the entire workflow
-        Map<String, Object> workflowInputs = new HashMap<>();
-        workflowInputs.put("question", question);
-        String workflowRunId = tracingService.startRun("chain", "AgenticRAGWorkflow", workflowInputs);
+        // Start LangSmith trace for the entire workflow; whether it is sampled is decided here, once
+        Trace trace = tracingService.startTrace("AgenticRAGWorkflow", () -> {
+            Map<String, Object> inputs = new HashMap<>();
+            inputs.put("question", question);
+            return inputs;
+        });
+        try {
+            return run(question, trace);
+        } catch (RuntimeException e) {
+            trace.end(() -> {
+                Map<String, Object> outputs = new HashMap<>();
+                outputs.put("question", question);
+                return outputs;
+            }, e.getClass().getSimpleName() + ": " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private GraphState run(String question, Trace trace) {
+        // Answers are cached under the store content they were built from, not whatever it is once they finish
+        long storeEpoch = embeddingStore.getEpoch();
+        GraphState exact = exactMatchCache.getAnswer(question);
+        if (exact != null) {
+            log.info("Exact-match cache hit for question: {}", question);
+            return endCachedRun(trace, exact, "exact");
+        }
 
+        // Embedded once here and reused by the answer cache, the router and retrieval
+        float[] questionEmbedding = null;
+        if (answerCache.isEnabled() || questionRouter.usesQuestionEmbedding()) {
+            try {
+                questionEmbedding = vectorStoreService.embed(question);
+            } catch (RuntimeException e) {
+                log.warn("Could not embed question up front, later steps will embed it themselves", e);
+            }
+        }
+        if (answerCache.isEnabled() && questionEmbedding != null) {
+            GraphState cached = answerCache.lookup(question, questionEmbedding);
+            if (cached != null) {
+                exactMatchCache.putAnswer(question, cached, storeEpoch);
+                return endCachedRun(trace, cached, "semantic");
+            }
+        }
+
+        int deadlineSeconds = workflowConfig.getDeadlineSeconds();
         GraphState state = GraphState.builder()
                 .question(question)
+                .deadline(deadlineSeconds > 0 ? Instant.now().plusSeconds(deadlineSeconds) : null)
+                .trace(trace)
+                .questionEmbedding(questionEmbedding)
                 .build();
 
         // Entry point: Route question
@@ -70,6 +140,7 @@ public class AgenticRagWorkflow {
         if (WEBSEARCH.equals(route)) {
             state = webSearchNode.webSearch(state);
             state = generateNode.generate(state);
+            recordExit("unchecked");
         } else {
             // Retrieve from vector store
             state = retrieveNode.retrieve(state);
@@ -91,32 +162,62 @@ public class AgenticRagWorkflow {
             state = checkGenerationQuality(state);
         }
 
-        log.info("Workflow completed. Final answer: {}", state.getGeneration());
+        // Only answers that passed grading, or that grading never applied to, are worth repeating
+        if (state.isVerified() || WEBSEARCH.equals(route)) {
+            exactMatchCache.putAnswer(question, state, storeEpoch);
+            if (answerCache.isEnabled() && questionEmbedding != null) {
+                answerCache.put(question, questionEmbedding, state, storeEpoch);
+            }
+        }
+
+        log.info("Workflow completed after {} generation(s), verified: {}. Final answer: {}",
+                state.getGenerationAttempts(), state.isVerified(), state.getGeneration());
 
         // End LangSmith trace
-        Map<String, Object> workflowOutputs = new HashMap<>();
-        workflowOutputs.put("question", state.getQuestion());
-        workflowOutputs.put("answer", state.getGeneration());
-        workflowOutputs.put("documents_used", state.getDocuments() != null ? state.getDocuments().size() : 0);
-        tracingService.endRun(workflowRunId, workflowOutputs, null);
+        GraphState result = state;
+        trace.end(() -> {
+            Map<String, Object> outputs = new HashMap<>();
+            outputs.put("question", result.getQuestion());
+            outputs.put("answer", result.getGeneration());
+            outputs.put("documents_used", result.getDocuments() != null ? result.getDocuments().size() : 0);
+            outputs.put("generation_attempts", result.getGenerationAttempts());
+            outputs.put("verified", result.isVerified());
+            return outputs;
+        }, null);
 
         return state;
     }
 
+    private GraphState endCachedRun(Trace trace, GraphState cached, String cache) {
+        trace.end(() -> {
+            Map<String, Object> outputs = new HashMap<>();
+            outputs.put("question", cached.getQuestion());
+            outputs.put("answer", cached.getGeneration());
+            outputs.put("verified", cached.isVerified());
+            outputs.put("cache", cache);
+            return outputs;
+        }, null);
+        return cached;
+    }
+
     private String routeQuestion(GraphState state) {
         log.info("---ROUTE QUESTION---");
         String question = state.getQuestion();
 
         // Trace routing decision
-        Map<String, Object> inputs = new HashMap<>();
-        inputs.put("question", question);
-        String runId = tracingService.startRun("chain", "RouteQuestion", inputs);
+        Trace.Span span = state.getTrace().startSpan("chain", "RouteQuestion", () -> {
+            Map<String, Object> inputs = new HashMap<>();
+            inputs.put("question", question);
+            return inputs;
+        });
 
-        RouteQuery source = questionRouter.route(question);
+        RouteQuery source = questionRouter.route(question, state.getQuestionEmbedding());
 
-        Map<String, Object> outputs = new HashMap<>();
-        outputs.put("datasource", source.getDatasource());
-        tracingService.endRun(runId, outputs, null);
+        span.end(() -> {
+            Map<String, Object> outputs = new HashMap<>();
+            outputs.put("datasource", source.getDatasource());
+            return outputs;
+        });
 
         if (WEBSEARCH.equals(source.getDatasource())) {
             log.info("---ROUTE QUESTION TO WEBSEARCH---");
@@ -141,37 +242,99 @@ public class AgenticRagWorkflow {
         }
     }
 
+    /**
+     * Grades generations until one is grounded, regenerating at most up to the retry budget and
+     * deadline. When either runs out the latest generation is returned unverified.
+     */
     private GraphState checkGenerationQuality(GraphState state) {
-        log.info("---CHECK HALLUCINATIONS---");
-        String question = state.getQuestion();
-        String generation = state.getGeneration();
-        String documents = state.getDocuments().stream()
-                .map(dev.langchain4j.data.document.Document::text)
-                .collect(Collectors.joining("\n\n"));
+        while (true) {
+            GenerationVerdict verdict = gradeGeneration(state);
 
-        GradeHallucinations hallucinationScore = hallucinationGrader.grade(documents, generation);
-
-        if (hallucinationScore.isBinaryScore()) {
-            log.info("--DECISION: GENERATION IS GROUNDED IN DOCUMENTS--");
-            log.info("--GRADE GENERATION vs QUESTION--");
-
-            GradeAnswer answerScore = answerGrader.grade(question, generation);
-
-            if (answerScore.isBinaryScore()) {
+            if (verdict == GenerationVerdict.USEFUL) {
                 log.info("--DECISION: GENERATION ADDRESSES QUESTION--");
-                return state; // Success
-            } else {
+                state.setVerified(true);
+                recordExit("verified");
+                return state;
+            }
+            if (deadlinePassed(state)) {
+                log.warn("--DECISION: DEADLINE EXCEEDED, RETURNING UNVERIFIED GENERATION--");
+                recordExit("deadline_exceeded");
+                return state;
+            }
+            if (verdict == GenerationVerdict.NOT_USEFUL) {
                 log.info("--DECISION: GENERATION DOES NOT ADDRESS QUESTION--");
                 // Regenerate with web search
+                state.getTrace().keep("regenerated");
                 state = webSearchNode.webSearch(state);
                 state = generateNode.generate(state);
+                recordExit("web_search_fallback");
                 return state;
             }
-        } else {
+
             log.info("--DECISION: GENERATION IS NOT GROUNDED IN DOCUMENTS--");
+            if (state.getGenerationAttempts() >= workflowConfig.getMaxGenerations()) {
+                log.warn("--DECISION: RETRY BUDGET OF {} GENERATIONS EXHAUSTED, RETURNING UNVERIFIED GENERATION--",
+                        workflowConfig.getMaxGenerations());
+                recordExit("retry_budget_exhausted");
+                return state;
+            }
             // Regenerate
+            state.getTrace().keep("regenerated");
             state = generateNode.generate(state);
-            return checkGenerationQuality(state); // Recursive check
         }
     }
+
+    private GenerationVerdict gradeGeneration(GraphState state) {
+        log.info("---CHECK HALLUCINATIONS---");
+        String question = state.getQuestion();
+        String generation = state.getGeneration();
+        String documents = state.getDocuments().stream()
+                .map(dev.langchain4j.data.document.Document::text)
+                .collect(Collectors.joining("\n\n"));
+
+        // The answer grade is only needed for a grounded generation, but requesting it alongside the
+        // hallucination grade makes the check cost one round trip instead of two
+        GradeHallucinations hallucinationScore;
+        GradeAnswer answerScore = null;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<GradeAnswer> answerCall = executor.submit(() -> answerGrader.grade(question, generation));
+            try {
+                hallucinationScore = hallucinationGrader.grade(documents, generation);
+                if (hallucinationScore.isBinaryScore()) {
+                    answerScore = answerCall.get();
+                }
+            } finally {
+                answerCall.cancel(true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while grading generation", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Answer grading failed", e.getCause());
+        }
+
+        if (!hallucinationScore.isBinaryScore()) {
+            return GenerationVerdict.NOT_GROUNDED;
+        }
+        log.info("--DECISION: GENERATION IS GROUNDED IN DOCUMENTS--");
+        log.info("--GRADE GENERATION vs QUESTION--");
+        return answerScore.isBinaryScore() ? GenerationVerdict.USEFUL : GenerationVerdict.NOT_USEFUL;
+    }
+
+    private boolean deadlinePassed(GraphState state) {
+        return state.getDeadline() != null && Instant.now().isAfter(state.getDeadline());
+    }
+
+    private void recordExit(String path) {
+        meterRegistry.counter("workflow.generation.exits", "path", path).increment();
+    }
+
+    private enum GenerationVerdict {
+        NOT_GROUNDED,
+        NOT_USEFUL,
+        USEFUL
+    }
 }
@@ -0,0 +1,60 @@
+package com.sachin.agentic.rag.model;
+
+import java.util.List;
+
+/**
+ * Relevance grades for several retrieved documents returned by a single grading call
+ */
+public class BatchGradeDocuments {
+    /**
+     * One grade per document, identified by the index it was given in the prompt
+     */
+    private List<DocumentGrade> grades;
+
+    public BatchGradeDocuments() {
+    }
+
+    public BatchGradeDocuments(List<DocumentGrade> grades) {
+        this.grades = grades;
+    }
+
+    public List<DocumentGrade> getGrades() {
+        return grades;
+    }
+
+    public void setGrades(List<DocumentGrade> grades) {
+        this.grades = grades;
+    }
+
+    /**
+     * Grade of the document at {@code index}: "yes" or "no"
+     */
+    public static class DocumentGrade {
+        private int index;
+        private String binaryScore;
+
+        public DocumentGrade() {
+        }
+
+        public DocumentGrade(int index, String binaryScore) {
+            this.index = index;
+            this.binaryScore = binaryScore;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        public String getBinaryScore() {
+            return binaryScore;
+        }
+
+        public void setBinaryScore(String binaryScore) {
+            this.binaryScore = binaryScore;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.sachin.agentic.rag.model;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Latency, token usage and estimated cost of the chat model calls made by each chain since startup
+ */
+public class ChatUsageReport {
+    private final List<ChainUsage> chains;
+
+    public ChatUsageReport(List<ChainUsage> chains) {
+        this.chains = List.copyOf(chains);
+    }
+
+    public List<ChainUsage> getChains() {
+        return chains;
+    }
+
+    public double getTotalCost() {
+        return chains.stream().mapToDouble(ChainUsage::cost).sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT,
+                "%-22s %-16s %6s %6s %10s %10s %10s %10s %10s%n",
+                "chain", "model", "calls", "failed", "mean ms", "max ms", "in tok", "out tok", "cost $"));
+        for (ChainUsage usage : chains) {
+            table.append(String.format(Locale.ROOT, "%-22s %-16s %6d %6d %10.0f %10.0f %10d %10d %10.4f%n",
+                    usage.chain(), usage.model(), usage.calls(), usage.failures(), usage.meanLatencyMillis(),
+                    usage.maxLatencyMillis(), usage.inputTokens(), usage.outputTokens(), usage.cost()));
+        }
+        table.append(String.format(Locale.ROOT, "total estimated cost: $%.4f", getTotalCost()));
+        return table.toString();
+    }
+
+    /**
+     * Usage of one chain; cost is estimated from the per-1k-token prices configured for the chain
+     */
+    public record ChainUsage(String chain, String model, long calls, long failures, double meanLatencyMillis,
+                             double maxLatencyMillis, long inputTokens, long outputTokens, double cost) {
+    }
+}
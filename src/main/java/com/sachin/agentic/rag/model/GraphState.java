@@ -1,7 +1,9 @@
 package com.sachin.agentic.rag.model;
 
+import com.sachin.agentic.rag.service.Trace;
 import dev.langchain4j.data.document.Document;
 
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -28,6 +30,31 @@ public class GraphState {
      */
     private List<Document> documents;
 
+    /**
+     * Number of answers generated so far for this request
+     */
+    private int generationAttempts;
+
+    /**
+     * Wall-clock time after which the workflow stops retrying, or null for no deadline
+     */
+    private Instant deadline;
+
+    /**
+     * Whether the final generation passed the hallucination and answer checks
+     */
+    private boolean verified;
+
+    /**
+     * Trace that nodes record their runs under
+     */
+    private Trace trace = Trace.NOOP;
+
+    /**
+     * Unit-length embedding of the question, computed once per request, or null if not computed
+     */
+    private float[] questionEmbedding;
+
     public GraphState() {
     }
 
@@ -70,15 +97,86 @@ public class GraphState {
         this.documents = documents;
     }
 
+    public int getGenerationAttempts() {
+        return generationAttempts;
+    }
+
+    public void setGenerationAttempts(int generationAttempts) {
+        this.generationAttempts = generationAttempts;
+    }
+
+    public Instant getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(Instant deadline) {
+        this.deadline = deadline;
+    }
+
+    public boolean isVerified() {
+        return verified;
+    }
+
+    public void setVerified(boolean verified) {
+        this.verified = verified;
+    }
+
+    public Trace getTrace() {
+        return trace;
+    }
+
+    public void setTrace(Trace trace) {
+        this.trace = trace;
+    }
+
+    public float[] getQuestionEmbedding() {
+        return questionEmbedding;
+    }
+
+    public void setQuestionEmbedding(float[] questionEmbedding) {
+        this.questionEmbedding = questionEmbedding;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
 
+    /**
+     * Copy of a finished state answering the given question, for serving a cached answer.
+     */
+    public GraphState copyFor(String question) {
+        return builder()
+                .question(question)
+                .generation(generation)
+                .webSearch(webSearch)
+                .documents(documents != null ? List.copyOf(documents) : null)
+                .generationAttempts(generationAttempts)
+                .verified(verified)
+                .build();
+    }
+
+    /**
+     * Starts a builder for the next state of the same request, carrying over its retry budget, deadline, trace
+     * and question embedding.
+     */
+    public static Builder builder(GraphState previous) {
+        return new Builder()
+                .generationAttempts(previous.generationAttempts)
+                .deadline(previous.deadline)
+                .trace(previous.trace)
+                .questionEmbedding(previous.questionEmbedding);
+    }
+
     public static class Builder {
         private String question;
         private String generation;
         private boolean webSearch;
         private List<Document> documents;
+        private int generationAttempts;
+        private Instant deadline;
+        private boolean verified;
+        private Trace trace = Trace.NOOP;
+        private float[] questionEmbedding;
 
         public Builder question(String question) {
             this.question = question;
@@ -100,8 +198,39 @@ public class GraphState {
             return this;
         }
 
+        public Builder generationAttempts(int generationAttempts) {
+            this.generationAttempts = generationAttempts;
+            return this;
+        }
+
+        public Builder deadline(Instant deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        public Builder verified(boolean verified) {
+            this.verified = verified;
+            return this;
+        }
+
+        public Builder trace(Trace trace) {
+            this.trace = trace;
+            return this;
+        }
+
+        public Builder questionEmbedding(float[] questionEmbedding) {
+            this.questionEmbedding = questionEmbedding;
+            return this;
+        }
+
         public GraphState build() {
-            return new GraphState(question, generation, webSearch, documents);
+            GraphState state = new GraphState(question, generation, webSearch, documents);
+            state.generationAttempts = generationAttempts;
+            state.deadline = deadline;
+            state.verified = verified;
+            state.trace = trace;
+            state.questionEmbedding = questionEmbedding;
+            return state;
         }
     }
 }
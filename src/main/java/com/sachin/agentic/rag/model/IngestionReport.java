@@ -0,0 +1,84 @@
+package com.sachin.agentic.rag.model;
+
+import java.util.List;
+
+/**
+ * Outcome of an ingestion run, including the URLs that could not be ingested and why
+ */
+public class IngestionReport {
+    private final int urlsRequested;
+    private final int documentsLoaded;
+    private final int segmentsStored;
+    private final long durationMillis;
+    private final List<Failure> failures;
+
+    public IngestionReport(int urlsRequested, int documentsLoaded, int segmentsStored, long durationMillis,
+                           List<Failure> failures) {
+        this.urlsRequested = urlsRequested;
+        this.documentsLoaded = documentsLoaded;
+        this.segmentsStored = segmentsStored;
+        this.durationMillis = durationMillis;
+        this.failures = List.copyOf(failures);
+    }
+
+    public int getUrlsRequested() {
+        return urlsRequested;
+    }
+
+    public int getDocumentsLoaded() {
+        return documentsLoaded;
+    }
+
+    public int getSegmentsStored() {
+        return segmentsStored;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionReport{" +
+                "urlsRequested=" + urlsRequested +
+                ", documentsLoaded=" + documentsLoaded +
+                ", segmentsStored=" + segmentsStored +
+                ", durationMillis=" + durationMillis +
+                ", failures=" + failures.size() +
+                '}';
+    }
+
+    /**
+     * A URL that failed to load or parse
+     */
+    public static class Failure {
+        private final String url;
+        private final String error;
+
+        public Failure(String url, String error) {
+            this.url = url;
+            this.error = error;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return url + ": " + error;
+        }
+    }
+}
@@ -2,7 +2,7 @@ package com.sachin.agentic.rag.node;
 
 import com.sachin.agentic.rag.chain.GenerationChain;
 import com.sachin.agentic.rag.model.GraphState;
-import com.sachin.agentic.rag.service.LangSmithTracingService;
+import com.sachin.agentic.rag.service.Trace;
 import dev.langchain4j.data.document.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,11 +20,9 @@ public class GenerateNode {
     private static final Logger log = LoggerFactory.getLogger(GenerateNode.class);
 
     private final GenerationChain generationChain;
-    private final LangSmithTracingService tracingService;
 
-    public GenerateNode(GenerationChain generationChain, LangSmithTracingService tracingService) {
+    public GenerateNode(GenerationChain generationChain) {
         this.generationChain = generationChain;
-        this.tracingService = tracingService;
     }
 
     public GraphState generate(GraphState state) {
@@ -38,23 +36,28 @@ public class GenerateNode {
                 .collect(Collectors.joining("\n\n"));
 
         // Trace generation
-        Map<String, Object> inputs = new HashMap<>();
-        inputs.put("question", question);
-        inputs.put("context", context.substring(0, Math.min(500, context.length())) + "...");
-        inputs.put("num_documents", documents.size());
-        String runId = tracingService.startRun("llm", "GenerateAnswer", inputs);
+        Trace.Span span = state.getTrace().startSpan("llm", "GenerateAnswer", () -> {
+            Map<String, Object> inputs = new HashMap<>();
+            inputs.put("question", question);
+            inputs.put("context", context.substring(0, Math.min(500, context.length())) + "...");
+            inputs.put("num_documents", documents.size());
+            return inputs;
+        });
 
         String generation = generationChain.generate(context, question);
 
         // End trace
-        Map<String, Object> outputs = new HashMap<>();
-        outputs.put("generation", generation);
-        tracingService.endRun(runId, outputs, null);
+        span.end(() -> {
+            Map<String, Object> outputs = new HashMap<>();
+            outputs.put("generation", generation);
+            return outputs;
+        });
 
-        return GraphState.builder()
+        return GraphState.builder(state)
                 .question(question)
                 .documents(documents)
                 .generation(generation)
+                .generationAttempts(state.getGenerationAttempts() + 1)
                 .build();
     }
 }
@@ -1,18 +1,34 @@
 package com.sachin.agentic.rag.node;
 
 import com.sachin.agentic.rag.chain.RetrievalGrader;
+import com.sachin.agentic.rag.config.GradingConfig;
 import com.sachin.agentic.rag.model.GradeDocuments;
 import com.sachin.agentic.rag.model.GraphState;
-import com.sachin.agentic.rag.service.LangSmithTracingService;
+import com.sachin.agentic.rag.service.GradeVerdictCache;
+import com.sachin.agentic.rag.service.Trace;
+import com.sachin.agentic.rag.service.VectorStoreService;
 import dev.langchain4j.data.document.Document;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Determines whether the retrieved documents are relevant to the question
@@ -22,11 +38,26 @@ public class GradeDocumentsNode {
     private static final Logger log = LoggerFactory.getLogger(GradeDocumentsNode.class);
 
     private final RetrievalGrader retrievalGrader;
-    private final LangSmithTracingService tracingService;
+    private final GradingConfig gradingConfig;
+    private final GradeVerdictCache verdictCache;
+    private final Counter autoAccepted;
+    private final Counter autoRejected;
+    private final Counter cached;
+    private final Counter llmGraded;
+    private final Counter llmCalls;
+    private final Counter llmCallsSaved;
 
-    public GradeDocumentsNode(RetrievalGrader retrievalGrader, LangSmithTracingService tracingService) {
+    public GradeDocumentsNode(RetrievalGrader retrievalGrader, GradingConfig gradingConfig,
+                              GradeVerdictCache verdictCache, MeterRegistry meterRegistry) {
         this.retrievalGrader = retrievalGrader;
-        this.tracingService = tracingService;
+        this.gradingConfig = gradingConfig;
+        this.verdictCache = verdictCache;
+        this.autoAccepted = meterRegistry.counter("grading.documents", "decision", "auto_accept");
+        this.autoRejected = meterRegistry.counter("grading.documents", "decision", "auto_reject");
+        this.cached = meterRegistry.counter("grading.documents", "decision", "cached");
+        this.llmGraded = meterRegistry.counter("grading.documents", "decision", "llm");
+        this.llmCalls = meterRegistry.counter("grading.llm.calls");
+        this.llmCallsSaved = meterRegistry.counter("grading.llm.calls.saved");
     }
 
     public GraphState gradeDocuments(GraphState state) {
@@ -35,38 +66,272 @@ public class GradeDocumentsNode {
         List<Document> documents = state.getDocuments();
 
         // Trace document grading
-        Map<String, Object> inputs = new HashMap<>();
-        inputs.put("question", question);
-        inputs.put("num_documents", documents.size());
-        String runId = tracingService.startRun("chain", "GradeDocuments", inputs);
+        Trace.Span span = state.getTrace().startSpan("chain", "GradeDocuments", () -> {
+            Map<String, Object> inputs = new HashMap<>();
+            inputs.put("question", question);
+            inputs.put("num_documents", documents.size());
+            return inputs;
+        });
 
         List<Document> filteredDocs = new ArrayList<>();
         boolean webSearch = false;
 
-        for (Document doc : documents) {
-            GradeDocuments score = retrievalGrader.grade(doc.text(), question);
-            String grade = score.getBinaryScore();
-
-            if ("yes".equalsIgnoreCase(grade)) {
+        List<GradeDocuments> scores = grade(documents, question);
+        for (int i = 0; i < documents.size(); i++) {
+            GradeDocuments score = scores.get(i);
+            if (score == null) {
+                log.info("--GRADE: DOCUMENT SKIPPED, ENOUGH RELEVANT DOCUMENTS--");
+            } else if ("yes".equalsIgnoreCase(score.getBinaryScore())) {
                 log.info("--GRADE: DOCUMENT RELEVANT--");
-                filteredDocs.add(doc);
+                filteredDocs.add(documents.get(i));
             } else {
                 log.info("--GRADE: DOCUMENT NOT RELEVANT--");
                 webSearch = true;
             }
         }
+        int relevantTarget = gradingConfig.getEarlyExitRelevantDocuments();
+        if (relevantTarget > 0 && filteredDocs.size() >= relevantTarget) {
+            // Enough relevant context was found, so earlier misses do not call for a web search
+            webSearch = false;
+        }
 
         // End trace
-        Map<String, Object> outputs = new HashMap<>();
-        outputs.put("relevant_documents", filteredDocs.size());
-        outputs.put("total_documents", documents.size());
-        outputs.put("needs_web_search", webSearch);
-        tracingService.endRun(runId, outputs, null);
+        boolean needsWebSearch = webSearch;
+        span.end(() -> {
+            Map<String, Object> outputs = new HashMap<>();
+            outputs.put("relevant_documents", filteredDocs.size());
+            outputs.put("total_documents", documents.size());
+            outputs.put("needs_web_search", needsWebSearch);
+            return outputs;
+        });
 
-        return GraphState.builder()
+        return GraphState.builder(state)
                 .question(question)
                 .documents(filteredDocs)
                 .webSearch(webSearch)
                 .build();
     }
+
+    /**
+     * Decides documents with a retrieval score outside the prefilter band directly, reuses cached
+     * verdicts, and sends only the remaining ambiguous documents to the LLM. Grades come back in
+     * document order; documents left ungraded because enough relevant ones were already found have a
+     * {@code null} grade.
+     */
+    private List<GradeDocuments> grade(List<Document> documents, String question) {
+        GradeDocuments[] grades = new GradeDocuments[documents.size()];
+        List<Integer> ambiguous = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            Double score = gradingConfig.isPrefilterEnabled()
+                    ? documents.get(i).metadata().getDouble(VectorStoreService.SCORE_METADATA_KEY)
+                    : null;
+            if (score != null && score >= gradingConfig.getAcceptAbove()) {
+                grades[i] = new GradeDocuments("yes");
+                autoAccepted.increment();
+                continue;
+            }
+            if (score != null && score < gradingConfig.getRejectBelow()) {
+                grades[i] = new GradeDocuments("no");
+                autoRejected.increment();
+                continue;
+            }
+            GradeDocuments verdict = verdictCache.get(documents.get(i).text(), question);
+            if (verdict != null) {
+                grades[i] = verdict;
+                cached.increment();
+            } else {
+                ambiguous.add(i);
+            }
+        }
+
+        boolean batch = gradingConfig.getMode() == GradingConfig.Mode.BATCH;
+        int decided = documents.size() - ambiguous.size();
+        if (decided > 0) {
+            log.info("Decided {} of {} documents by retrieval score or cached verdict", decided, documents.size());
+            // Per-document grading saves one call per decided document, batch grading only when nothing is left
+            llmCallsSaved.increment(batch ? (ambiguous.isEmpty() ? 1 : 0) : decided);
+        }
+        if (ambiguous.isEmpty()) {
+            return Arrays.asList(grades);
+        }
+
+        List<Document> toGrade = ambiguous.stream().map(documents::get).toList();
+        int relevantTarget = gradingConfig.getEarlyExitRelevantDocuments();
+        List<GradeDocuments> llmGrades;
+        if (batch) {
+            llmGrades = gradeBatch(toGrade, question);
+        } else if (relevantTarget > 0) {
+            int accepted = (int) Arrays.stream(grades).filter(grade -> grade != null && "yes".equals(grade.getBinaryScore())).count();
+            llmGrades = gradeUntilRelevant(toGrade, question, relevantTarget - accepted);
+        } else {
+            llmGrades = gradeConcurrently(toGrade, question);
+        }
+        for (int i = 0; i < ambiguous.size(); i++) {
+            grades[ambiguous.get(i)] = llmGrades.get(i);
+        }
+        return Arrays.asList(grades);
+    }
+
+    /**
+     * Grades documents in descending retrieval-score order, keeping at most
+     * {@code grading.concurrency} calls in flight, and stops as soon as {@code needed} of them
+     * are relevant. Calls still running at that point are cancelled and their documents, like
+     * those never started, get a {@code null} grade.
+     */
+    private List<GradeDocuments> gradeUntilRelevant(List<Document> documents, String question, int needed) {
+        GradeDocuments[] grades = new GradeDocuments[documents.size()];
+        if (needed <= 0) {
+            llmCallsSaved.increment(documents.size());
+            return Arrays.asList(grades);
+        }
+
+        List<Integer> order = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingDouble((Integer i) -> retrievalScore(documents.get(i))).reversed());
+
+        int started = 0;
+        int relevant = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<GradedDocument> completions = new ExecutorCompletionService<>(executor);
+            Map<Integer, Future<GradedDocument>> inFlight = new HashMap<>();
+            while (relevant < needed && (started < order.size() || !inFlight.isEmpty())) {
+                while (started < order.size() && inFlight.size() < gradingConfig.getConcurrency()) {
+                    int index = order.get(started++);
+                    inFlight.put(index, completions.submit(() ->
+                            new GradedDocument(index, gradeWithTimeout(executor, documents.get(index), question))));
+                }
+
+                GradedDocument finished = completions.take().get();
+                inFlight.remove(finished.index());
+                grades[finished.index()] = finished.grade();
+                if ("yes".equalsIgnoreCase(finished.grade().getBinaryScore())) {
+                    relevant++;
+                }
+            }
+
+            if (relevant >= needed) {
+                for (Future<GradedDocument> call : inFlight.values()) {
+                    call.cancel(true);
+                }
+                int skipped = documents.size() - started + inFlight.size();
+                if (skipped > 0) {
+                    log.info("Found {} relevant documents, skipped grading {} more", relevant, skipped);
+                    llmCallsSaved.increment(documents.size() - started);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while grading documents", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Grading task failed", e.getCause());
+        }
+        return Arrays.asList(grades);
+    }
+
+    private record GradedDocument(int index, GradeDocuments grade) {
+    }
+
+    private static double retrievalScore(Document document) {
+        Double score = document.metadata().getDouble(VectorStoreService.SCORE_METADATA_KEY);
+        return score != null ? score : 0;
+    }
+
+    /**
+     * Grades all documents in one call, or falls back to per-document grading when that call
+     * fails, times out or returns something other than one yes/no grade per document.
+     */
+    private List<GradeDocuments> gradeBatch(List<Document> documents, String question) {
+        if (documents.size() <= 1) {
+            return gradeConcurrently(documents, question);
+        }
+
+        List<String> texts = documents.stream().map(Document::text).toList();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            llmCalls.increment();
+            Future<List<GradeDocuments>> call = executor.submit(() -> retrievalGrader.gradeBatch(texts, question));
+            try {
+                List<GradeDocuments> grades = call.get(gradingConfig.getTimeoutSeconds(), TimeUnit.SECONDS);
+                llmGraded.increment(grades.size());
+                for (int i = 0; i < documents.size(); i++) {
+                    verdictCache.put(texts.get(i), question, grades.get(i));
+                }
+                return grades;
+            } catch (TimeoutException e) {
+                call.cancel(true);
+                log.warn("Batch grading timed out after {} s, grading documents individually",
+                        gradingConfig.getTimeoutSeconds());
+            } catch (ExecutionException e) {
+                log.warn("Batch grading failed, grading documents individually: {}", e.getCause().getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while grading documents", e);
+        }
+        return gradeConcurrently(documents, question);
+    }
+
+    /**
+     * Grades every document on its own virtual thread, at most {@code grading.concurrency} at a
+     * time, and returns the grades in document order.
+     */
+    private List<GradeDocuments> gradeConcurrently(List<Document> documents, String question) {
+        Semaphore permits = new Semaphore(gradingConfig.getConcurrency());
+        List<GradeDocuments> scores = new ArrayList<>(documents.size());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<GradeDocuments>> futures = new ArrayList<>(documents.size());
+            for (Document doc : documents) {
+                futures.add(executor.submit(() -> {
+                    // The timeout starts once the call holds a permit, not while it queues
+                    permits.acquire();
+                    try {
+                        return gradeWithTimeout(executor, doc, question);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            for (Future<GradeDocuments> future : futures) {
+                scores.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while grading documents", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Grading task failed", e.getCause());
+        }
+        return scores;
+    }
+
+    /**
+     * Runs one grading call on its own virtual thread so it can be abandoned after
+     * {@code grading.timeout-seconds}. A call that fails or times out grades the document "no".
+     */
+    private GradeDocuments gradeWithTimeout(ExecutorService executor, Document document, String question)
+            throws InterruptedException {
+        llmCalls.increment();
+        Future<GradeDocuments> call = executor.submit(() -> retrievalGrader.grade(document.text(), question));
+        try {
+            GradeDocuments grade = call.get(gradingConfig.getTimeoutSeconds(), TimeUnit.SECONDS);
+            if (grade == null) {
+                return new GradeDocuments("no");
+            }
+            // Counted only here, so skipped, cancelled, failed and timed-out documents are not
+            llmGraded.increment();
+            verdictCache.put(document.text(), question, grade);
+            return grade;
+        } catch (TimeoutException e) {
+            log.warn("Grading call timed out after {} s", gradingConfig.getTimeoutSeconds());
+            return new GradeDocuments("no");
+        } catch (ExecutionException e) {
+            log.error("Grading call failed", e.getCause());
+            return new GradeDocuments("no");
+        } finally {
+            // Stops the call if it timed out, or if this grading task was itself cancelled
+            call.cancel(true);
+        }
+    }
 }
@@ -1,7 +1,7 @@
 package com.sachin.agentic.rag.node;
 
 import com.sachin.agentic.rag.model.GraphState;
-import com.sachin.agentic.rag.service.LangSmithTracingService;
+import com.sachin.agentic.rag.service.Trace;
 import com.sachin.agentic.rag.service.VectorStoreService;
 import dev.langchain4j.data.document.Document;
 import org.slf4j.Logger;
@@ -20,11 +20,9 @@ public class RetrieveNode {
     private static final Logger log = LoggerFactory.getLogger(RetrieveNode.class);
 
     private final VectorStoreService vectorStoreService;
-    private final LangSmithTracingService tracingService;
 
-    public RetrieveNode(VectorStoreService vectorStoreService, LangSmithTracingService tracingService) {
+    public RetrieveNode(VectorStoreService vectorStoreService) {
         this.vectorStoreService = vectorStoreService;
-        this.tracingService = tracingService;
     }
 
     public GraphState retrieve(GraphState state) {
@@ -32,21 +30,25 @@ public class RetrieveNode {
         String question = state.getQuestion();
 
         // Trace retrieval
-        Map<String, Object> inputs = new HashMap<>();
-        inputs.put("question", question);
-        String runId = tracingService.startRun("retriever", "RetrieveDocuments", inputs);
+        Trace.Span span = state.getTrace().startSpan("retriever", "RetrieveDocuments", () -> {
+            Map<String, Object> inputs = new HashMap<>();
+            inputs.put("question", question);
+            return inputs;
+        });
 
-        List<Document> documents = vectorStoreService.retrieveDocuments(question);
+        List<Document> documents = vectorStoreService.retrieveDocuments(question, state.getQuestionEmbedding());
 
         // End trace
-        Map<String, Object> outputs = new HashMap<>();
-        outputs.put("num_documents", documents.size());
-        outputs.put("documents", documents.stream()
-                .map(doc -> doc.text().substring(0, Math.min(200, doc.text().length())) + "...")
-                .toList());
-        tracingService.endRun(runId, outputs, null);
-
-        return GraphState.builder()
+        span.end(() -> {
+            Map<String, Object> outputs = new HashMap<>();
+            outputs.put("num_documents", documents.size());
+            outputs.put("documents", documents.stream()
+                    .map(doc -> doc.text().substring(0, Math.min(200, doc.text().length())) + "...")
+                    .toList());
+            return outputs;
+        });
+
+        return GraphState.builder(state)
                 .question(question)
                 .documents(documents)
                 .build();
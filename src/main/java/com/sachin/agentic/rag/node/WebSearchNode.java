@@ -1,8 +1,8 @@
 package com.sachin.agentic.rag.node;
 
 import com.sachin.agentic.rag.model.GraphState;
-import com.sachin.agentic.rag.service.LangSmithTracingService;
 import com.sachin.agentic.rag.service.TavilySearchService;
+import com.sachin.agentic.rag.service.Trace;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.Metadata;
 import org.slf4j.Logger;
@@ -22,11 +22,9 @@ public class WebSearchNode {
     private static final Logger log = LoggerFactory.getLogger(WebSearchNode.class);
 
     private final TavilySearchService tavilySearchService;
-    private final LangSmithTracingService tracingService;
 
-    public WebSearchNode(TavilySearchService tavilySearchService, LangSmithTracingService tracingService) {
+    public WebSearchNode(TavilySearchService tavilySearchService) {
         this.tavilySearchService = tavilySearchService;
-        this.tracingService = tracingService;
     }
 
     public GraphState webSearch(GraphState state) {
@@ -35,9 +33,11 @@ public class WebSearchNode {
         List<Document> existingDocs = state.getDocuments() != null ? state.getDocuments() : new ArrayList<>();
 
         // Trace web search
-        Map<String, Object> inputs = new HashMap<>();
-        inputs.put("question", question);
-        String runId = tracingService.startRun("tool", "WebSearch", inputs);
+        Trace.Span span = state.getTrace().startSpan("tool", "WebSearch", () -> {
+            Map<String, Object> inputs = new HashMap<>();
+            inputs.put("question", question);
+            return inputs;
+        });
 
         // Perform web search
         String searchResults = tavilySearchService.search(question);
@@ -47,12 +47,14 @@ public class WebSearchNode {
         documents.add(webSearchDoc);
 
         // End trace
-        Map<String, Object> outputs = new HashMap<>();
-        outputs.put("search_results_length", searchResults.length());
-        outputs.put("total_documents", documents.size());
-        tracingService.endRun(runId, outputs, null);
-
-        return GraphState.builder()
+        span.end(() -> {
+            Map<String, Object> outputs = new HashMap<>();
+            outputs.put("search_results_length", searchResults.length());
+            outputs.put("total_documents", documents.size());
+            return outputs;
+        });
+
+        return GraphState.builder(state)
                 .question(question)
                 .documents(documents)
                 .build();
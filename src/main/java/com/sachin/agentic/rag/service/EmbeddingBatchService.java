@@ -0,0 +1,137 @@
+package com.sachin.agentic.rag.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Embeds many segments with a few large embedAll calls instead of one request per segment.
+ * <p>
+ * Segments are packed into batches bounded by both a segment count and an estimated token
+ * budget per request, and up to {@code embedding.batch.concurrency} batches are in flight at once.
+ */
+@Service
+public class EmbeddingBatchService {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingBatchService.class);
+
+    // Rough English-text ratio used to stay under the provider's per-request token limit
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final EmbeddingModel embeddingModel;
+    private final int maxSegmentsPerBatch;
+    private final int maxTokensPerBatch;
+    private final int concurrency;
+
+    public EmbeddingBatchService(@Qualifier("ingestionEmbeddingModel") EmbeddingModel embeddingModel,
+                                 @Value("${embedding.batch.max-segments:512}") int maxSegmentsPerBatch,
+                                 @Value("${embedding.batch.max-tokens:100000}") int maxTokensPerBatch,
+                                 @Value("${embedding.batch.concurrency:4}") int concurrency) {
+        this.embeddingModel = embeddingModel;
+        this.maxSegmentsPerBatch = Math.max(1, maxSegmentsPerBatch);
+        this.maxTokensPerBatch = Math.max(1, maxTokensPerBatch);
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    public int getMaxSegmentsPerBatch() {
+        return maxSegmentsPerBatch;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Returns one embedding per segment, in the same order as the input.
+     */
+    public List<Embedding> embedAll(List<TextSegment> segments) {
+        if (segments.isEmpty()) {
+            return List.of();
+        }
+
+        long start = System.nanoTime();
+        List<List<TextSegment>> batches = batches(segments);
+        Embedding[] embeddings = new Embedding[segments.size()];
+        Semaphore inFlight = new Semaphore(concurrency);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(batches.size());
+            int offset = 0;
+            for (List<TextSegment> batch : batches) {
+                int batchOffset = offset;
+                futures.add(executor.submit(() -> {
+                    inFlight.acquire();
+                    try {
+                        List<Embedding> batchEmbeddings = embeddingModel.embedAll(batch).content();
+                        if (batchEmbeddings.size() != batch.size()) {
+                            throw new IllegalStateException("Embedding model returned " + batchEmbeddings.size()
+                                    + " embeddings for " + batch.size() + " segments");
+                        }
+                        for (int i = 0; i < batchEmbeddings.size(); i++) {
+                            embeddings[batchOffset + i] = batchEmbeddings.get(i);
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                    return null;
+                }));
+                offset += batch.size();
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while embedding segments", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to embed segments", e.getCause());
+        }
+
+        log.info("Embedded {} segments in {} batches in {} ms",
+                segments.size(), batches.size(), (System.nanoTime() - start) / 1_000_000);
+        return Arrays.asList(embeddings);
+    }
+
+    /**
+     * Packs consecutive segments into batches that respect both the segment and token limits.
+     * A single segment larger than the token budget still gets a batch of its own.
+     */
+    List<List<TextSegment>> batches(List<TextSegment> segments) {
+        List<List<TextSegment>> batches = new ArrayList<>();
+        List<TextSegment> batch = new ArrayList<>();
+        long batchTokens = 0;
+        for (TextSegment segment : segments) {
+            int tokens = estimateTokens(segment);
+            if (!batch.isEmpty() && (batch.size() >= maxSegmentsPerBatch || batchTokens + tokens > maxTokensPerBatch)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchTokens = 0;
+            }
+            batch.add(segment);
+            batchTokens += tokens;
+        }
+        batches.add(batch);
+        return batches;
+    }
+
+    private static int estimateTokens(TextSegment segment) {
+        return segment.text().length() / CHARS_PER_TOKEN + 1;
+    }
+}
@@ -0,0 +1,107 @@
+package com.sachin.agentic.rag.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sachin.agentic.rag.config.CacheConfig;
+import com.sachin.agentic.rag.model.GraphState;
+import com.sachin.agentic.rag.store.MappedEmbeddingStore;
+import dev.langchain4j.data.document.Document;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Caches final answers and retrieval results by normalized question text.
+ * <p>
+ * Keys include the vector store's epoch, so once ingestion writes to the store no earlier entry can
+ * match again; stale entries simply age out. Both caches are bounded with Caffeine's W-TinyLFU
+ * eviction and expire after a TTL, which also bounds how stale a web-search answer can get.
+ */
+@Service
+public class ExactMatchCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final MappedEmbeddingStore embeddingStore;
+    private final boolean enabled;
+    private final Cache<Key, GraphState> answers;
+    private final Cache<Key, List<Document>> retrievals;
+
+    public ExactMatchCache(MappedEmbeddingStore embeddingStore, CacheConfig config, MeterRegistry meterRegistry) {
+        this.embeddingStore = embeddingStore;
+        this.enabled = config.isExactEnabled();
+        this.answers = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(config.getExactMaxEntries())
+                .expireAfterWrite(Duration.ofMinutes(config.getExactTtlMinutes()))
+                .recordStats()
+                .<Key, GraphState>build(), "answers");
+        this.retrievals = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(config.getExactMaxEntries())
+                .expireAfterWrite(Duration.ofMinutes(config.getExactTtlMinutes()))
+                .recordStats()
+                .<Key, List<Document>>build(), "retrievals");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns a copy of the answer cached for this question at the current store epoch, or {@code null}.
+     */
+    public GraphState getAnswer(String question) {
+        if (!enabled) {
+            return null;
+        }
+        GraphState cached = answers.getIfPresent(key(question, 0, embeddingStore.getEpoch()));
+        return cached != null ? cached.copyFor(question) : null;
+    }
+
+    /**
+     * Caches an answer under the store epoch it was built at, so an answer that raced ingestion never
+     * becomes visible at the new epoch.
+     */
+    public void putAnswer(String question, GraphState state, long storeEpoch) {
+        if (enabled) {
+            answers.put(key(question, 0, storeEpoch), state.copyFor(question));
+        }
+    }
+
+    /**
+     * Returns the documents retrieved for this query at the current store epoch, retrieving them on a miss.
+     */
+    public List<Document> retrieve(String query, int maxResults, Supplier<List<Document>> retriever) {
+        if (!enabled) {
+            return retriever.get();
+        }
+        Key key = key(query, maxResults, embeddingStore.getEpoch());
+        List<Document> cached = retrievals.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        // Retrieved outside the cache so a slow search never holds one of its locks; concurrent misses may both search
+        List<Document> documents = List.copyOf(retriever.get());
+        retrievals.put(key, documents);
+        return documents;
+    }
+
+    private static Key key(String text, int maxResults, long storeEpoch) {
+        return new Key(normalize(text), maxResults, storeEpoch);
+    }
+
+    /**
+     * Lower-cases the text and collapses whitespace, so trivially different spellings share an entry.
+     */
+    static String normalize(String text) {
+        return WHITESPACE.matcher(text.strip().toLowerCase(Locale.ROOT)).replaceAll(" ");
+    }
+
+    private record Key(String text, int maxResults, long storeEpoch) {
+    }
+}
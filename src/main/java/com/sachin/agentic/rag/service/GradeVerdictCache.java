@@ -0,0 +1,238 @@
+package com.sachin.agentic.rag.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sachin.agentic.rag.config.ChatModelFactory;
+import com.sachin.agentic.rag.config.GradingConfig;
+import com.sachin.agentic.rag.model.GradeDocuments;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Cache of document relevance verdicts, keyed by hashes of the document text and of the normalized
+ * question, so a chunk graded against a question once is not sent to the grader again.
+ * <p>
+ * Verdicts expire after a TTL and the least valuable are evicted when the cache is full. When a path
+ * is configured every verdict is also appended to a file ({@code document hash, question hash,
+ * graded-at millis, verdict}) that is replayed on startup, so the cache survives restarts; the file
+ * is rewritten from the live entries once it holds twice as many records as the cache.
+ */
+@Service
+public class GradeVerdictCache implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(GradeVerdictCache.class);
+
+    private static final int RECORD_BYTES = 4 * Long.BYTES + Long.BYTES + 1;
+
+    private final boolean enabled;
+    private final byte[] graderPrefix;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Path file;
+    private final Cache<Key, Verdict> verdicts;
+    private final Object writeLock = new Object();
+    private final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(GradeVerdictCache::sha256);
+
+    private FileChannel channel;
+    private long records;
+
+    public GradeVerdictCache(GradingConfig config, ChatModelFactory chatModelFactory, MeterRegistry meterRegistry)
+            throws IOException {
+        this.enabled = config.isCacheEnabled();
+        // Verdicts from a different grader model are not reused
+        this.graderPrefix = (chatModelFactory.modelName("retrieval-grader") + '\0').getBytes(StandardCharsets.UTF_8);
+        this.ttlMillis = Duration.ofHours(config.getCacheTtlHours()).toMillis();
+        this.maxEntries = config.getCacheMaxEntries();
+        this.verdicts = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .recordStats()
+                .<Key, Verdict>build(), "grades");
+        this.file = enabled && !config.getCachePath().isBlank() ? Path.of(config.getCachePath()) : null;
+        if (file != null) {
+            open();
+        }
+    }
+
+    /**
+     * Returns the cached verdict for this document and question, or {@code null}.
+     */
+    public GradeDocuments get(String document, String question) {
+        if (!enabled) {
+            return null;
+        }
+        Key key = key(document, question);
+        Verdict verdict = verdicts.getIfPresent(key);
+        if (verdict == null) {
+            return null;
+        }
+        // Verdicts replayed from disk keep their original grading time
+        if (System.currentTimeMillis() - verdict.gradedAtMillis() > ttlMillis) {
+            verdicts.invalidate(key);
+            return null;
+        }
+        return new GradeDocuments(verdict.relevant() ? "yes" : "no");
+    }
+
+    /**
+     * Remembers a verdict the grader actually returned; defaults used after a failed call must not be cached.
+     */
+    public void put(String document, String question, GradeDocuments grade) {
+        if (!enabled || grade == null || grade.getBinaryScore() == null) {
+            return;
+        }
+        Key key = key(document, question);
+        Verdict verdict = new Verdict("yes".equalsIgnoreCase(grade.getBinaryScore()), System.currentTimeMillis());
+        verdicts.put(key, verdict);
+        if (file != null) {
+            append(key, verdict);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        long loaded = 0;
+        if (Files.exists(file)) {
+            long now = System.currentTimeMillis();
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+                while (in.readNBytes(record.array(), 0, RECORD_BYTES) == RECORD_BYTES) {
+                    record.clear();
+                    Key key = new Key(record.getLong(), record.getLong(), record.getLong(), record.getLong());
+                    long gradedAtMillis = record.getLong();
+                    Verdict verdict = new Verdict(record.get() != 0, gradedAtMillis);
+                    records++;
+                    if (now - verdict.gradedAtMillis() <= ttlMillis) {
+                        verdicts.put(key, verdict);
+                        loaded++;
+                    }
+                }
+            }
+        }
+        if (records > 2L * maxEntries || Files.exists(file) && Files.size(file) % RECORD_BYTES != 0) {
+            compact();
+        } else {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        log.info("Opened grade verdict cache at {} with {} verdicts", file, loaded);
+    }
+
+    private void append(Key key, Verdict verdict) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        write(record, key, verdict);
+        record.flip();
+        synchronized (writeLock) {
+            if (channel == null) {
+                return;
+            }
+            try {
+                writeFully(channel, record);
+                if (++records > 2L * maxEntries) {
+                    compact();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write grade verdict cache " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Replaces the file with one record per live entry. Callers hold the write lock or run before
+     * the cache is shared.
+     */
+    private void compact() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<Key, Verdict> live = verdicts.asMap();
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 1024);
+            for (Map.Entry<Key, Verdict> entry : live.entrySet()) {
+                if (buffer.remaining() < RECORD_BYTES) {
+                    writeFully(out, buffer.flip());
+                    buffer.clear();
+                }
+                write(buffer, entry.getKey(), entry.getValue());
+            }
+            writeFully(out, buffer.flip());
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        records = live.size();
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void write(ByteBuffer buffer, Key key, Verdict verdict) {
+        buffer.putLong(key.document1()).putLong(key.document2())
+                .putLong(key.question1()).putLong(key.question2())
+                .putLong(verdict.gradedAtMillis())
+                .put((byte) (verdict.relevant() ? 1 : 0));
+    }
+
+    private Key key(String document, String question) {
+        MessageDigest sha256 = digest.get();
+        ByteBuffer documentHash = ByteBuffer.wrap(sha256.digest(document.getBytes(StandardCharsets.UTF_8)));
+        sha256.update(graderPrefix);
+        ByteBuffer questionHash = ByteBuffer.wrap(sha256.digest(
+                ExactMatchCache.normalize(question).getBytes(StandardCharsets.UTF_8)));
+        return new Key(documentHash.getLong(), documentHash.getLong(), questionHash.getLong(), questionHash.getLong());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * First 128 bits of the SHA-256 of the document text and of the grader model plus normalized question.
+     */
+    private record Key(long document1, long document2, long question1, long question2) {
+    }
+
+    private record Verdict(boolean relevant, long gradedAtMillis) {
+    }
+}
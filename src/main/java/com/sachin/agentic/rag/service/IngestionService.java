@@ -1,81 +1,260 @@
 package com.sachin.agentic.rag.service;
 
+import com.sachin.agentic.rag.config.IngestionConfig;
+import com.sachin.agentic.rag.model.IngestionReport;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentParser;
 import dev.langchain4j.data.document.DocumentSplitter;
-import dev.langchain4j.data.document.loader.UrlDocumentLoader;
 import dev.langchain4j.data.document.parser.apache.tika.ApacheTikaDocumentParser;
 import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Service for ingesting documents into the vector store
+ * Service for ingesting documents into the vector store.
+ * <p>
+ * Ingestion streams through fetch, parse, split, embed and store stages connected by bounded
+ * queues, so memory use depends on the queue sizes rather than on the size of the crawl.
  */
 @Service
 public class IngestionService {
     private static final Logger log = LoggerFactory.getLogger(IngestionService.class);
 
+    private static final List<String> STAGES = List.of("fetch", "parse", "split", "embed", "store");
+
     private final EmbeddingStore<TextSegment> embeddingStore;
-    private final EmbeddingModel embeddingModel;
+    private final EmbeddingBatchService embeddingBatchService;
+    private final IngestionConfig config;
+    private final MeterRegistry meterRegistry;
     private final DocumentSplitter documentSplitter;
     private final DocumentParser documentParser;
+    private final HttpClient httpClient;
+    private final Set<PipelineStage<?, ?>> activeStages = ConcurrentHashMap.newKeySet();
 
-    public IngestionService(@Value("${openai.api.key}") String apiKey) {
-        // Using in-memory embedding store for development/testing
-        this.embeddingStore = new InMemoryEmbeddingStore<>();
-
-        this.embeddingModel = OpenAiEmbeddingModel.builder()
-                .apiKey(apiKey)
-                .modelName("text-embedding-ada-002")
-                .build();
+    public IngestionService(EmbeddingStore<TextSegment> embeddingStore, EmbeddingBatchService embeddingBatchService,
+                            IngestionConfig config, MeterRegistry meterRegistry) {
+        this.embeddingStore = embeddingStore;
+        this.embeddingBatchService = embeddingBatchService;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
 
         this.documentSplitter = DocumentSplitters.recursive(250, 0);
         this.documentParser = new ApacheTikaDocumentParser();
+        this.httpClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(config.getFetchTimeoutSeconds()))
+                .build();
+
+        for (String stage : STAGES) {
+            Gauge.builder("ingestion.queue.depth", () -> queueDepth(stage))
+                    .tag("stage", stage)
+                    .description("Items waiting in front of an ingestion stage")
+                    .register(meterRegistry);
+        }
     }
 
-    public void ingestUrls(List<String> urls) {
+    public IngestionReport ingestUrls(List<String> urls) {
         log.info("Starting ingestion of {} URLs", urls.size());
+        long start = System.nanoTime();
+
+        Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+        Queue<IngestionReport.Failure> failures = new ConcurrentLinkedQueue<>();
+        AtomicInteger documentsLoaded = new AtomicInteger();
+        AtomicInteger segmentsStored = new AtomicInteger();
+        AtomicReference<Exception> fatal = new AtomicReference<>();
+        int queueCapacity = config.getQueueCapacity();
+        int batchSize = embeddingBatchService.getMaxSegmentsPerBatch();
+
+        PipelineStage<String, FetchedPage> fetch = new PipelineStage<>("fetch", config.getMaxConcurrentFetches(),
+                queueCapacity, 1, (items, out) -> {
+            for (String url : items) {
+                FetchedPage page = fetch(url, hostPermits, failures);
+                if (page != null) {
+                    out.emit(page);
+                }
+            }
+        }, meterRegistry);
+        PipelineStage<FetchedPage, Document> parse = new PipelineStage<>("parse", config.getParseWorkers(),
+                queueCapacity, 1, (items, out) -> {
+            for (FetchedPage page : items) {
+                Document document = parse(page, failures);
+                if (document != null) {
+                    documentsLoaded.incrementAndGet();
+                    out.emit(document);
+                }
+            }
+        }, meterRegistry);
+        PipelineStage<Document, TextSegment> split = new PipelineStage<>("split", config.getSplitWorkers(),
+                queueCapacity, 1, (items, out) -> {
+            for (Document document : items) {
+                for (TextSegment segment : documentSplitter.split(document)) {
+                    out.emit(segment);
+                }
+            }
+        }, meterRegistry);
+        // Embed workers take whatever segments are waiting, up to one batch, so batches fill under load
+        PipelineStage<TextSegment, EmbeddedBatch> embed = new PipelineStage<>("embed",
+                embeddingBatchService.getConcurrency(), 2 * batchSize, batchSize, (items, out) -> {
+            List<TextSegment> segments = List.copyOf(items);
+            out.emit(new EmbeddedBatch(segments, embeddingBatchService.embedAll(segments)));
+        }, meterRegistry);
+        PipelineStage<EmbeddedBatch, Void> store = new PipelineStage<>("store", config.getStoreWorkers(),
+                queueCapacity, 1, (items, out) -> {
+            for (EmbeddedBatch batch : items) {
+                embeddingStore.addAll(batch.embeddings(), batch.segments());
+                segmentsStored.addAndGet(batch.segments().size());
+            }
+        }, meterRegistry);
+        fetch.then(parse).then(split).then(embed).then(store);
+        List<PipelineStage<?, ?>> stages = List.of(fetch, parse, split, embed, store);
+
+        activeStages.addAll(stages);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (PipelineStage<?, ?> stage : stages) {
+                stage.start(executor, e -> {
+                    if (fatal.compareAndSet(null, e)) {
+                        executor.shutdownNow();
+                    }
+                });
+            }
+            executor.submit(() -> {
+                // Interleave hosts so per-host limits do not leave fetch workers queueing behind one site
+                for (String url : interleaveByHost(urls)) {
+                    fetch.put(url);
+                }
+                fetch.finish();
+                return null;
+            });
+        } finally {
+            activeStages.removeAll(stages);
+        }
+
+        if (fatal.get() != null) {
+            throw new IllegalStateException("Ingestion failed after storing " + segmentsStored.get() + " segments",
+                    fatal.get());
+        }
+
+        IngestionReport report = new IngestionReport(urls.size(), documentsLoaded.get(), segmentsStored.get(),
+                (System.nanoTime() - start) / 1_000_000, new ArrayList<>(failures));
+        log.info("Ingestion completed. Stored {} segments from {} of {} URLs",
+                segmentsStored.get(), documentsLoaded.get(), urls.size());
+        return report;
+    }
 
-        List<Document> allDocuments = new ArrayList<>();
+    /**
+     * Downloads a URL within its host's and the global concurrency limit, or records a failure and returns {@code null}.
+     */
+    private FetchedPage fetch(String url, Map<String, Semaphore> hostPermits,
+                              Queue<IngestionReport.Failure> failures) throws InterruptedException {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getHost() == null) {
+                throw new IllegalArgumentException("URL has no host");
+            }
 
-        for (String urlString : urls) {
+            Semaphore hostLimit = hostPermits.computeIfAbsent(uri.getHost(),
+                    h -> new Semaphore(config.getMaxFetchesPerHost()));
+            hostLimit.acquire();
             try {
-                Document document = UrlDocumentLoader.load(urlString, documentParser);
-                allDocuments.add(document);
-                log.info("Loaded document from: {}", urlString);
-            } catch (Exception e) {
-                log.error("Error loading document from URL: {}", urlString, e);
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                        .timeout(Duration.ofSeconds(config.getFetchTimeoutSeconds()))
+                        .GET()
+                        .build();
+                HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                if (response.statusCode() >= 400) {
+                    throw new IOException("Unexpected response code: " + response.statusCode());
+                }
+                return new FetchedPage(url, response.body());
+            } finally {
+                hostLimit.release();
             }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error loading document from URL: {}", url, e);
+            failures.add(new IngestionReport.Failure(url, e.getClass().getSimpleName() + ": " + e.getMessage()));
+            return null;
         }
+    }
 
-        log.info("Total documents loaded: {}", allDocuments.size());
+    private Document parse(FetchedPage page, Queue<IngestionReport.Failure> failures) {
+        try {
+            Document document = documentParser.parse(new ByteArrayInputStream(page.body()));
+            document.metadata().put("url", page.url());
+            log.info("Loaded document from: {}", page.url());
+            return document;
+        } catch (Exception e) {
+            log.error("Error parsing document from URL: {}", page.url(), e);
+            failures.add(new IngestionReport.Failure(page.url(), e.getClass().getSimpleName() + ": " + e.getMessage()));
+            return null;
+        }
+    }
 
-        // Split documents
-        List<TextSegment> segments = new ArrayList<>();
-        for (Document doc : allDocuments) {
-            segments.addAll(documentSplitter.split(doc));
+    private int queueDepth(String stage) {
+        int depth = 0;
+        for (PipelineStage<?, ?> active : activeStages) {
+            if (active.name().equals(stage)) {
+                depth += active.queueDepth();
+            }
         }
+        return depth;
+    }
 
-        log.info("Total segments after splitting: {}", segments.size());
+    static List<String> interleaveByHost(List<String> urls) {
+        Map<String, Deque<String>> byHost = new LinkedHashMap<>();
+        for (String url : urls) {
+            String host;
+            try {
+                host = String.valueOf(URI.create(url).getHost());
+            } catch (IllegalArgumentException e) {
+                host = "";
+            }
+            byHost.computeIfAbsent(host, h -> new ArrayDeque<>()).add(url);
+        }
 
-        // Embed and store segments
-        for (TextSegment segment : segments) {
-            Embedding embedding = embeddingModel.embed(segment).content();
-            embeddingStore.add(embedding, segment);
+        List<String> interleaved = new ArrayList<>(urls.size());
+        while (interleaved.size() < urls.size()) {
+            for (Deque<String> hostUrls : byHost.values()) {
+                if (!hostUrls.isEmpty()) {
+                    interleaved.add(hostUrls.poll());
+                }
+            }
         }
+        return interleaved;
+    }
+
+    private record FetchedPage(String url, byte[] body) {
+    }
 
-        log.info("Ingestion completed. Stored {} segments", segments.size());
+    private record EmbeddedBatch(List<TextSegment> segments, List<Embedding> embeddings) {
     }
 }
@@ -0,0 +1,399 @@
+package com.sachin.agentic.rag.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sachin.agentic.rag.config.LangSmithConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sends trace runs to LangSmith from a background thread, so tracing never waits on the network.
+ * <p>
+ * Run creations and updates go into a bounded lock-free queue; a worker drains it in batches and
+ * posts each batch, gzip-compressed, to the {@code /runs/batch} endpoint. An update whose run is
+ * created in the same batch is folded into the creation. When the queue is full, runs are dropped
+ * according to the drop policy and counted. Closing the exporter flushes whatever is still queued.
+ * <p>
+ * When a spool path is configured, batches that fail to send are appended to a size-capped
+ * {@link TraceSpool} instead of being lost, and so is everything exported while the spool is not empty,
+ * so updates never overtake their runs. The worker replays the spool with exponential backoff until
+ * LangSmith accepts it again; spooled runs left at shutdown are replayed after the next start.
+ */
+@Component
+public class LangSmithExporter implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(LangSmithExporter.class);
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    private final URI batchUri;
+    private final String apiKey;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final boolean gzip;
+    private final DropPolicy dropPolicy;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Queue<Operation> queue = new ConcurrentLinkedQueue<>();
+    // Reserved queue slots; ConcurrentLinkedQueue.size() is O(n) and cannot bound the queue on its own
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Counter droppedNewest;
+    private final Counter droppedOldest;
+    private final Counter droppedClosed;
+    private final Counter runsSent;
+    private final Counter runsFailed;
+    private final Counter batchesSent;
+    private final Counter runsSpooled;
+    private final Counter runsReplayed;
+    private final Counter droppedSpoolFull;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final TraceSpool spool;
+
+    private volatile boolean running = true;
+    private volatile Thread worker;
+    // Replay schedule, touched only by the worker
+    private long backoffNanos;
+    private long nextReplay;
+
+    public LangSmithExporter(LangSmithConfig config,
+                             @Value("${langsmith.export.queue-capacity:10000}") int queueCapacity,
+                             @Value("${langsmith.export.batch-size:100}") int batchSize,
+                             @Value("${langsmith.export.flush-interval-millis:1000}") long flushIntervalMillis,
+                             @Value("${langsmith.export.gzip:true}") boolean gzip,
+                             @Value("${langsmith.export.drop-policy:newest}") String dropPolicy,
+                             @Value("${langsmith.export.spool.path:}") String spoolPath,
+                             @Value("${langsmith.export.spool.max-bytes:104857600}") long spoolMaxBytes,
+                             @Value("${langsmith.export.spool.initial-backoff-millis:1000}") long initialBackoffMillis,
+                             @Value("${langsmith.export.spool.max-backoff-millis:60000}") long maxBackoffMillis,
+                             MeterRegistry meterRegistry) {
+        this.batchUri = URI.create(config.getEndpoint().replaceAll("/+$", "") + "/runs/batch");
+        this.apiKey = config.getApiKey();
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+        this.gzip = gzip;
+        this.dropPolicy = DropPolicy.valueOf(dropPolicy.trim().toUpperCase(Locale.ROOT));
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+
+        this.droppedNewest = meterRegistry.counter("langsmith.export.dropped", "reason", "queue_full",
+                "policy", "newest");
+        this.droppedOldest = meterRegistry.counter("langsmith.export.dropped", "reason", "queue_full",
+                "policy", "oldest");
+        this.droppedClosed = meterRegistry.counter("langsmith.export.dropped", "reason", "closed",
+                "policy", this.dropPolicy.name().toLowerCase(Locale.ROOT));
+        this.runsSent = meterRegistry.counter("langsmith.export.runs", "result", "sent");
+        this.runsFailed = meterRegistry.counter("langsmith.export.runs", "result", "failed");
+        this.batchesSent = meterRegistry.counter("langsmith.export.batches");
+        this.runsSpooled = meterRegistry.counter("langsmith.export.spool.runs", "result", "spooled");
+        this.runsReplayed = meterRegistry.counter("langsmith.export.spool.runs", "result", "replayed");
+        this.droppedSpoolFull = meterRegistry.counter("langsmith.export.dropped", "reason", "spool_full",
+                "policy", "newest");
+        Gauge.builder("langsmith.export.queue.size", queued::get)
+                .description("Trace operations waiting to be exported")
+                .register(meterRegistry);
+
+        this.initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, initialBackoffMillis));
+        this.maxBackoffNanos = Math.max(initialBackoffNanos, TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis));
+        this.backoffNanos = initialBackoffNanos;
+        // Nothing is exported without tracing configured, so there is nothing to spool or replay either
+        this.spool = config.isConfigured() ? openSpool(spoolPath, spoolMaxBytes) : null;
+        if (spool != null) {
+            Gauge.builder("langsmith.export.spool.size", spool::pendingBytes)
+                    .description("Bytes of trace operations waiting in the spool to be replayed")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+            if (!spool.isEmpty()) {
+                // Runs spooled before the last shutdown are replayed without waiting for new ones
+                nextReplay = System.nanoTime();
+                startWorker();
+            }
+        }
+    }
+
+    /**
+     * Queues the creation of a run; {@code run} must contain its {@code id}.
+     */
+    public void create(Map<String, Object> run) {
+        enqueue(new Operation(false, run));
+    }
+
+    /**
+     * Queues an update to a run created earlier; {@code update} must contain the run's {@code id}.
+     */
+    public void update(Map<String, Object> update) {
+        enqueue(new Operation(true, update));
+    }
+
+    /**
+     * Stops accepting runs and waits for the worker to send everything already queued.
+     */
+    @Override
+    public void close() {
+        running = false;
+        Thread current = worker;
+        if (current != null) {
+            LockSupport.unpark(current);
+            try {
+                current.join(SHUTDOWN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (current.isAlive()) {
+                log.warn("LangSmith exporter did not flush within {} ms, {} operations lost",
+                        SHUTDOWN_TIMEOUT_MILLIS, queued.get());
+            }
+        }
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException e) {
+                log.warn("Failed to close trace spool: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void enqueue(Operation operation) {
+        if (!running) {
+            droppedClosed.increment();
+            return;
+        }
+        startWorker();
+
+        while (true) {
+            int size = queued.get();
+            if (size < queueCapacity) {
+                if (queued.compareAndSet(size, size + 1)) {
+                    queue.add(operation);
+                    break;
+                }
+            } else if (dropPolicy == DropPolicy.OLDEST && queue.poll() != null) {
+                // The new operation takes over the slot of the one it displaced
+                droppedOldest.increment();
+                queue.add(operation);
+                break;
+            } else {
+                droppedNewest.increment();
+                return;
+            }
+        }
+        if (queued.get() >= batchSize) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private void startWorker() {
+        if (started.compareAndSet(false, true)) {
+            worker = Thread.ofPlatform().daemon().name("langsmith-exporter").start(this::run);
+        }
+    }
+
+    private void run() {
+        List<Operation> batch = new ArrayList<>(batchSize);
+        long lastFlush = System.nanoTime();
+        while (running || queued.get() > 0) {
+            if (running && queued.get() < batchSize) {
+                long now = System.nanoTime();
+                long wait = flushIntervalNanos - (now - lastFlush);
+                if (spooling()) {
+                    wait = Math.min(wait, nextReplay - now);
+                }
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, wait);
+                    continue;
+                }
+            }
+
+            Operation operation;
+            while (batch.size() < batchSize && (operation = queue.poll()) != null) {
+                queued.decrementAndGet();
+                batch.add(operation);
+            }
+            if (!batch.isEmpty()) {
+                deliver(batch);
+                batch.clear();
+            }
+            lastFlush = System.nanoTime();
+            // Replay is left to the next start once shutting down, so close() never waits on backoff
+            if (running && spooling() && lastFlush - nextReplay >= 0) {
+                replay();
+            }
+        }
+    }
+
+    private boolean spooling() {
+        return spool != null && !spool.isEmpty();
+    }
+
+    private void deliver(List<Operation> batch) {
+        if (spool == null) {
+            send(batch);
+            return;
+        }
+        if (spool.isEmpty()) {
+            if (send(batch)) {
+                return;
+            }
+            backoffNanos = initialBackoffNanos;
+            nextReplay = System.nanoTime() + backoffNanos;
+        }
+        // Everything queues behind spooled runs until the spool is replayed, keeping creations before updates
+        try {
+            if (spool.append(batch)) {
+                runsSpooled.increment(batch.size());
+            } else {
+                droppedSpoolFull.increment(batch.size());
+            }
+        } catch (IOException e) {
+            log.warn("Failed to spool {} runs: {}", batch.size(), e.getMessage());
+            droppedSpoolFull.increment(batch.size());
+        }
+    }
+
+    /**
+     * Sends one batch from the head of the spool, doubling the delay before the next attempt if it fails.
+     */
+    private void replay() {
+        try {
+            TraceSpool.Chunk chunk = spool.peek(batchSize);
+            if (chunk.operations().isEmpty() || send(chunk.operations())) {
+                spool.remove(chunk);
+                runsReplayed.increment(chunk.operations().size());
+                backoffNanos = initialBackoffNanos;
+                nextReplay = System.nanoTime();
+                return;
+            }
+        } catch (IOException e) {
+            log.warn("Failed to replay trace spool: {}", e.getMessage());
+        }
+        backoffNanos = Math.min(backoffNanos * 2, maxBackoffNanos);
+        nextReplay = System.nanoTime() + backoffNanos;
+    }
+
+    /**
+     * Posts one batch, returning {@code false} if it failed in a way worth retrying. Batches LangSmith
+     * rejects as invalid are counted and not retried; authentication failures are retried, since they
+     * say nothing about the runs and a rotated or restored key lets them through later.
+     */
+    boolean send(List<Operation> operations) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(payload(operations));
+            HttpRequest.Builder request = HttpRequest.newBuilder(batchUri)
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("x-api-key", apiKey)
+                    .header("Content-Type", "application/json");
+            if (gzip) {
+                body = gzip(body);
+                request.header("Content-Encoding", "gzip");
+            }
+
+            HttpResponse<String> response = httpClient.send(request.POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            int status = response.statusCode();
+            if (status >= 300) {
+                log.warn("LangSmith batch rejected: {} - {}", status, response.body());
+                runsFailed.increment(operations.size());
+                return status < 500 && status != 401 && status != 403 && status != 408 && status != 429;
+            }
+            batchesSent.increment();
+            runsSent.increment(operations.size());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            runsFailed.increment(operations.size());
+            return false;
+        } catch (Exception e) {
+            log.warn("Failed to send {} runs to LangSmith: {}", operations.size(), e.getMessage());
+            runsFailed.increment(operations.size());
+            return false;
+        }
+    }
+
+    /**
+     * Builds the batch request, folding each update into the creation of the same run when both are present.
+     */
+    static Map<String, Object> payload(List<Operation> operations) {
+        Map<Object, Map<String, Object>> posts = new LinkedHashMap<>();
+        List<Map<String, Object>> patches = new ArrayList<>();
+        for (Operation operation : operations) {
+            Object id = operation.run().get("id");
+            if (!operation.update()) {
+                posts.put(id, new LinkedHashMap<>(operation.run()));
+            } else if (posts.containsKey(id)) {
+                posts.get(id).putAll(operation.run());
+            } else {
+                patches.add(operation.run());
+            }
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("post", new ArrayList<>(posts.values()));
+        payload.put("patch", patches);
+        return payload;
+    }
+
+    private TraceSpool openSpool(String path, long maxBytes) {
+        if (path == null || path.isBlank()) {
+            return null;
+        }
+        try {
+            return new TraceSpool(Path.of(path), maxBytes, objectMapper);
+        } catch (IOException e) {
+            log.warn("Failed to open trace spool {}, runs that fail to send will be dropped: {}",
+                    path, e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    record Operation(boolean update, Map<String, Object> run) {
+    }
+
+    public enum DropPolicy {
+        /**
+         * Reject runs arriving while the queue is full
+         */
+        NEWEST,
+        /**
+         * Discard the oldest queued run to make room
+         */
+        OLDEST
+    }
+}
@@ -1,102 +1,168 @@
 package com.sachin.agentic.rag.service;
 
 import com.sachin.agentic.rag.config.LangSmithConfig;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import okhttp3.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
- * Service for sending traces to LangSmith
+ * Service for sending traces to LangSmith.
+ * <p>
+ * Runs are handed to {@link LangSmithExporter}, which sends them in the background, so starting
+ * and ending runs never blocks on the network.
+ * <p>
+ * Workflows are traced through {@link #startTrace}, which applies head sampling once per workflow;
+ * see {@link Trace} for how unsampled workflows are still kept by tail sampling.
  */
 @Service
 public class LangSmithTracingService {
     private static final Logger log = LoggerFactory.getLogger(LangSmithTracingService.class);
 
-    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    // Dotted order segments start with the run's start time, so sibling runs sort chronologically
+    private static final DateTimeFormatter DOTTED_ORDER_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmssSSSSSS'Z'").withZone(ZoneOffset.UTC);
 
     private final LangSmithConfig config;
-    private final OkHttpClient httpClient;
-    private final ObjectMapper objectMapper;
+    private final LangSmithExporter exporter;
+    private final Counter headSampled;
+    private final Counter tailKept;
+    private final Counter dropped;
 
-    public LangSmithTracingService(LangSmithConfig config) {
+    public LangSmithTracingService(LangSmithConfig config, LangSmithExporter exporter, MeterRegistry meterRegistry) {
         this.config = config;
-        this.httpClient = new OkHttpClient();
-        this.objectMapper = new ObjectMapper();
+        this.exporter = exporter;
+        this.headSampled = meterRegistry.counter("langsmith.sampling.traces", "decision", "head_sampled");
+        this.tailKept = meterRegistry.counter("langsmith.sampling.traces", "decision", "tail_kept");
+        this.dropped = meterRegistry.counter("langsmith.sampling.traces", "decision", "dropped");
 
         if (config.isConfigured()) {
-            log.info("LangSmith tracing enabled for project: {}", config.getProject());
+            log.info("LangSmith tracing enabled for project: {}, sampling rate {}, tail sampling {}",
+                    config.getProject(), config.getSamplingRate(),
+                    config.isTailSamplingEnabled() ? "enabled" : "disabled");
         } else {
             log.info("LangSmith tracing disabled");
         }
     }
 
-    public String startRun(String runType, String name, Map<String, Object> inputs) {
+    /**
+     * Starts the trace of one workflow run, deciding whether it is head-sampled.
+     */
+    public Trace startTrace(String name, Supplier<Map<String, Object>> inputs) {
+        if (!config.isConfigured()) {
+            return Trace.NOOP;
+        }
+        double rate = config.getSamplingRate();
+        boolean sampled = rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate;
+        if (sampled) {
+            headSampled.increment();
+        } else if (!config.isTailSamplingEnabled()) {
+            dropped.increment();
+            return Trace.NOOP;
+        }
+        return new Trace(this, name, inputs, sampled, TimeUnit.MILLISECONDS.toNanos(config.getSlowThresholdMillis()));
+    }
+
+    /**
+     * Counts the tail sampling decision for a trace that was not head-sampled.
+     */
+    void recordTailDecision(boolean kept) {
+        (kept ? tailKept : dropped).increment();
+    }
+
+    public Run startRun(String runType, String name, Map<String, Object> inputs) {
         return startRun(runType, name, inputs, null);
     }
 
-    public String startRun(String runType, String name, Map<String, Object> inputs, String parentRunId) {
+    public Run startRun(String runType, String name, Map<String, Object> inputs, Run parent) {
+        return startRun(runType, name, inputs, parent, Instant.now(), null);
+    }
+
+    /**
+     * Starts a run at the given time; {@code sampling} records why a root run was traced.
+     */
+    Run startRun(String runType, String name, Map<String, Object> inputs, Run parent, Instant startTime,
+                 String sampling) {
         if (!config.isConfigured()) {
             return null;
         }
 
         try {
             String runId = UUID.randomUUID().toString();
+            String dottedOrder = DOTTED_ORDER_TIME.format(startTime) + runId;
+            Run run = parent != null
+                    ? new Run(runId, parent.traceId(), parent.dottedOrder() + "." + dottedOrder)
+                    : new Run(runId, runId, dottedOrder);
 
             // Build the run object according to LangSmith API schema
-            Map<String, Object> run = new HashMap<>();
-            run.put("id", runId);
-            run.put("name", name);
-            run.put("run_type", runType);
-            run.put("inputs", inputs != null ? inputs : new HashMap<>());
-            run.put("start_time", Instant.now().toString());
-            run.put("execution_order", 1);
+            Map<String, Object> body = new HashMap<>();
+            body.put("id", runId);
+            body.put("trace_id", run.traceId());
+            body.put("dotted_order", run.dottedOrder());
+            body.put("name", name);
+            body.put("run_type", runType);
+            body.put("inputs", inputs != null ? inputs : new HashMap<>());
+            body.put("start_time", startTime.toString());
+            body.put("execution_order", 1);
 
             // Add session information
-            run.put("session_name", config.getProject());
+            body.put("session_name", config.getProject());
 
             // Add extra metadata
             Map<String, Object> extra = new HashMap<>();
             extra.put("runtime", Map.of("platform", "java", "sdk", "custom"));
-            run.put("extra", extra);
+            if (sampling != null) {
+                extra.put("metadata", Map.of("sampling", sampling));
+            }
+            body.put("extra", extra);
 
-            if (parentRunId != null) {
-                run.put("parent_run_id", parentRunId);
+            if (parent != null) {
+                body.put("parent_run_id", parent.id());
             }
 
-            // Send the run object directly (not wrapped)
-            sendToLangSmith(run, "runs");
+            exporter.create(body);
             log.debug("Started LangSmith run: {} ({})", name, runId);
-            return runId;
+            return run;
         } catch (Exception e) {
             log.warn("Failed to start LangSmith run: {}", e.getMessage(), e);
             return null;
         }
     }
 
-    public void endRun(String runId, Map<String, Object> outputs, String error) {
-        if (!config.isConfigured() || runId == null) {
+    public void endRun(Run run, Map<String, Object> outputs, String error) {
+        endRun(run, outputs, error, Instant.now());
+    }
+
+    void endRun(Run run, Map<String, Object> outputs, String error, Instant endTime) {
+        if (!config.isConfigured() || run == null) {
             return;
         }
 
         try {
             Map<String, Object> update = new HashMap<>();
-            update.put("end_time", Instant.now().toString());
+            update.put("id", run.id());
+            update.put("trace_id", run.traceId());
+            update.put("dotted_order", run.dottedOrder());
+            update.put("end_time", endTime.toString());
             update.put("outputs", outputs != null ? outputs : new HashMap<>());
 
             if (error != null) {
                 update.put("error", error);
             }
 
-            // Send update directly (not wrapped)
-            sendToLangSmith(update, "runs/" + runId);
-            log.debug("Ended LangSmith run: {}", runId);
+            exporter.update(update);
+            log.debug("Ended LangSmith run: {}", run.id());
         } catch (Exception e) {
             log.warn("Failed to end LangSmith run: {}", e.getMessage(), e);
         }
@@ -106,10 +172,10 @@ public class LangSmithTracingService {
         logChain(name, inputs, outputs, null);
     }
 
-    public void logChain(String name, Map<String, Object> inputs, Map<String, Object> outputs, String parentRunId) {
-        String runId = startRun("chain", name, inputs, parentRunId);
-        if (runId != null) {
-            endRun(runId, outputs, null);
+    public void logChain(String name, Map<String, Object> inputs, Map<String, Object> outputs, Run parent) {
+        Run run = startRun("chain", name, inputs, parent);
+        if (run != null) {
+            endRun(run, outputs, null);
         }
     }
 
@@ -117,47 +183,17 @@ public class LangSmithTracingService {
         logLLM(name, inputs, outputs, null);
     }
 
-    public void logLLM(String name, Map<String, Object> inputs, Map<String, Object> outputs, String parentRunId) {
-        String runId = startRun("llm", name, inputs, parentRunId);
-        if (runId != null) {
-            endRun(runId, outputs, null);
+    public void logLLM(String name, Map<String, Object> inputs, Map<String, Object> outputs, Run parent) {
+        Run run = startRun("llm", name, inputs, parent);
+        if (run != null) {
+            endRun(run, outputs, null);
         }
     }
 
-    private void sendToLangSmith(Map<String, Object> data, String endpoint) {
-        try {
-            String url = config.getEndpoint() + "/" + endpoint;
-            String jsonBody = objectMapper.writeValueAsString(data);
-
-            log.debug("Sending to LangSmith URL: {}", url);
-            log.debug("Payload: {}", jsonBody);
-
-            // Use POST for creating runs, PATCH for updating
-            Request.Builder requestBuilder = new Request.Builder()
-                    .url(url)
-                    .header("x-api-key", config.getApiKey())
-                    .header("Content-Type", "application/json");
-
-            // If endpoint contains a run ID (for updates), use PATCH, otherwise POST
-            if (endpoint.contains("/")) {
-                log.debug("Using PATCH method");
-                requestBuilder.patch(RequestBody.create(jsonBody, JSON));
-            } else {
-                log.debug("Using POST method");
-                requestBuilder.post(RequestBody.create(jsonBody, JSON));
-            }
-
-            Response response = httpClient.newCall(requestBuilder.build()).execute();
-            String responseBody = response.body() != null ? response.body().string() : "";
-
-            if (!response.isSuccessful()) {
-                log.warn("LangSmith API error: {} - {}", response.code(), responseBody);
-            } else {
-                log.debug("Successfully sent to LangSmith: {}", response.code());
-            }
-            response.close();
-        } catch (Exception e) {
-            log.warn("Failed to send data to LangSmith: {}", e.getMessage(), e);
-        }
+    /**
+     * A started run and its position in the trace, which batch ingestion needs again when the run ends.
+     * Callers hold on to it until then, so runs that never end leave nothing behind.
+     */
+    public record Run(String id, String traceId, String dottedOrder) {
     }
 }
@@ -0,0 +1,145 @@
+package com.sachin.agentic.rag.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * One stage of a streaming pipeline: a bounded input queue drained by a fixed number of workers
+ * that hand their results to the next stage.
+ * <p>
+ * A full queue blocks the stage feeding it, which is what keeps memory flat. When every worker of
+ * a stage has seen the end of its input, the stage signals the end to the next one.
+ */
+final class PipelineStage<I, O> {
+    private static final Object END = new Object();
+
+    private final String name;
+    private final int workers;
+    private final int maxBatch;
+    private final BlockingQueue<Object> queue;
+    private final Processor<I, O> processor;
+    private final AtomicInteger running;
+    private final Counter processed;
+    private final Timer busy;
+    private PipelineStage<O, ?> next;
+
+    /**
+     * @param maxBatch most queued items handed to the processor in one call; more are only taken
+     *                 when already waiting, so batches grow with the backlog
+     */
+    PipelineStage(String name, int workers, int queueCapacity, int maxBatch, Processor<I, O> processor,
+                  MeterRegistry meterRegistry) {
+        this.name = name;
+        this.workers = workers;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.processor = processor;
+        this.running = new AtomicInteger(workers);
+        this.processed = meterRegistry.counter("ingestion.stage.items", "stage", name);
+        this.busy = meterRegistry.timer("ingestion.stage.busy", "stage", name);
+    }
+
+    <N> PipelineStage<O, N> then(PipelineStage<O, N> next) {
+        this.next = next;
+        return next;
+    }
+
+    String name() {
+        return name;
+    }
+
+    int queueDepth() {
+        return queue.size();
+    }
+
+    void put(I item) throws InterruptedException {
+        queue.put(item);
+    }
+
+    /**
+     * Signals that no more input will arrive; each worker consumes one end marker.
+     */
+    void finish() throws InterruptedException {
+        for (int i = 0; i < workers; i++) {
+            queue.put(END);
+        }
+    }
+
+    /**
+     * Starts the workers. An exception escaping the processor stops that worker and is passed to
+     * {@code onFailure}, which is expected to abort the whole pipeline.
+     */
+    void start(ExecutorService executor, Consumer<Exception> onFailure) {
+        for (int i = 0; i < workers; i++) {
+            executor.submit(() -> work(onFailure));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void work(Consumer<Exception> onFailure) {
+        List<Object> taken = new ArrayList<>(maxBatch);
+        List<I> items = new ArrayList<>(maxBatch);
+        boolean finished = false;
+        try {
+            while (!finished) {
+                taken.clear();
+                items.clear();
+                taken.add(queue.take());
+                if (maxBatch > 1) {
+                    queue.drainTo(taken, maxBatch - 1);
+                }
+
+                int ends = 0;
+                for (Object item : taken) {
+                    if (item == END) {
+                        ends++;
+                    } else {
+                        items.add((I) item);
+                    }
+                }
+                if (ends > 0) {
+                    finished = true;
+                    // Leave the other workers' end markers for them
+                    for (int i = 1; i < ends; i++) {
+                        queue.put(END);
+                    }
+                }
+
+                if (!items.isEmpty()) {
+                    long start = System.nanoTime();
+                    processor.process(items, next != null ? next::put : item -> { });
+                    busy.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    processed.increment(items.size());
+                }
+            }
+
+            if (running.decrementAndGet() == 0 && next != null) {
+                next.finish();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            onFailure.accept(e);
+        }
+    }
+
+    @FunctionalInterface
+    interface Processor<I, O> {
+        void process(List<I> items, Emitter<O> emitter) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface Emitter<O> {
+        void emit(O item) throws InterruptedException;
+    }
+}
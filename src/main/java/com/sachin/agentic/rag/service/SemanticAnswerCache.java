@@ -0,0 +1,144 @@
+package com.sachin.agentic.rag.service;
+
+import com.sachin.agentic.rag.config.CacheConfig;
+import com.sachin.agentic.rag.model.GraphState;
+import com.sachin.agentic.rag.store.MappedEmbeddingStore;
+import com.sachin.agentic.rag.store.VectorMath;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Cache of workflow answers keyed by question embedding, so a question close enough to one answered
+ * before gets that answer without running the workflow again.
+ * <p>
+ * The cache holds at most a few thousand questions, so a lookup compares the question with every
+ * cached one; that takes well under a millisecond, unlike an approximate index it needs no
+ * maintenance on eviction, and it always finds the closest question. Entries expire after a TTL,
+ * the least recently used entry is evicted when full, and everything is dropped once the vector
+ * store's content changes, since answers may depend on what was retrieved.
+ */
+@Service
+public class SemanticAnswerCache {
+    private static final Logger log = LoggerFactory.getLogger(SemanticAnswerCache.class);
+
+    private final MappedEmbeddingStore embeddingStore;
+    private final CacheConfig config;
+    private final Counter hits;
+    private final Counter misses;
+    private final MeterRegistry meterRegistry;
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long storeEpoch;
+
+    public SemanticAnswerCache(MappedEmbeddingStore embeddingStore, CacheConfig config,
+                               MeterRegistry meterRegistry) {
+        this.embeddingStore = embeddingStore;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.hits = meterRegistry.counter("cache.semantic.requests", "result", "hit");
+        this.misses = meterRegistry.counter("cache.semantic.requests", "result", "miss");
+        this.storeEpoch = embeddingStore.getEpoch();
+        Gauge.builder("cache.semantic.size", this::size)
+                .description("Questions in the semantic answer cache")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isSemanticEnabled();
+    }
+
+    /**
+     * Returns a copy of the answer cached for the closest question, if it is similar enough and still
+     * valid, or {@code null}. The embedding must be unit length, as {@link VectorStoreService#embed}
+     * returns it.
+     */
+    public GraphState lookup(String question, float[] embedding) {
+        Entry best = null;
+        double bestSimilarity = config.getSemanticSimilarityThreshold();
+        synchronized (entries) {
+            invalidateIfStoreChanged();
+            long now = System.nanoTime();
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (now - entry.expiresAtNanos() >= 0) {
+                    it.remove();
+                    evicted("expired", 1);
+                    continue;
+                }
+                double similarity = VectorMath.dot(embedding, entry.embedding());
+                if (similarity >= bestSimilarity) {
+                    best = entry;
+                    bestSimilarity = similarity;
+                }
+            }
+            if (best != null) {
+                // Refresh its recency
+                entries.get(best.question());
+            }
+        }
+
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        log.info("Semantic cache hit: '{}' matches cached question '{}' (similarity {})",
+                question, best.question(), bestSimilarity);
+        return best.state().copyFor(question);
+    }
+
+    /**
+     * Caches an answer built while the store was at {@code storeEpoch}; it is dropped if the store has
+     * changed since, as it may rest on content that is gone.
+     */
+    public void put(String question, float[] embedding, GraphState state, long storeEpoch) {
+        long expiresAt = System.nanoTime() + Duration.ofMinutes(config.getSemanticTtlMinutes()).toNanos();
+        synchronized (entries) {
+            invalidateIfStoreChanged();
+            if (storeEpoch != this.storeEpoch) {
+                log.debug("Not caching answer to '{}', the vector store changed while it was built", question);
+                return;
+            }
+            entries.put(question, new Entry(question, embedding, state.copyFor(question), expiresAt));
+            int excess = entries.size() - config.getSemanticMaxEntries();
+            for (Iterator<Entry> it = entries.values().iterator(); excess > 0 && it.hasNext(); excess--) {
+                it.next();
+                it.remove();
+                evicted("size", 1);
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void invalidateIfStoreChanged() {
+        long epoch = embeddingStore.getEpoch();
+        if (epoch != storeEpoch) {
+            evicted("invalidated", entries.size());
+            entries.clear();
+            storeEpoch = epoch;
+        }
+    }
+
+    private void evicted(String cause, int count) {
+        if (count > 0) {
+            meterRegistry.counter("cache.semantic.evictions", "cause", cause).increment(count);
+        }
+    }
+
+    private record Entry(String question, float[] embedding, GraphState state, long expiresAtNanos) {
+    }
+}
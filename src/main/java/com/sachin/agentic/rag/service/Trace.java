@@ -0,0 +1,187 @@
+package com.sachin.agentic.rag.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The trace of one workflow run, under which its nodes record their child runs.
+ * <p>
+ * A head-sampled trace exports every run as it starts and ends. Any other trace only remembers its runs'
+ * input and output suppliers until it ends, and tail sampling then exports it if it was slow, failed or
+ * was marked with {@link #keep(String)}; otherwise it is dropped without a single run map being built.
+ * Traces that cannot be kept at all are {@link #NOOP}, which records nothing.
+ * <p>
+ * Spans hold their own run handles, so a span that is never ended leaves nothing behind once its
+ * trace is gone; ending the trace closes such runs as incomplete.
+ */
+public final class Trace {
+    public static final Trace NOOP = new Trace(null, null, null, false, 0);
+
+    private static final Span NOOP_SPAN = new Span(NOOP, null, null, null, null);
+
+    private final LangSmithTracingService tracing;
+    private final String name;
+    private final Supplier<Map<String, Object>> inputs;
+    private final boolean sampled;
+    private final long slowThresholdNanos;
+    private final Instant startTime;
+    private final long startNanos;
+    private final LangSmithTracingService.Run rootRun;
+    // Spans of a head-sampled trace, or spans waiting for the tail sampling decision; null once ended
+    private List<Span> spans;
+    private String keepReason;
+
+    Trace(LangSmithTracingService tracing, String name, Supplier<Map<String, Object>> inputs, boolean sampled,
+          long slowThresholdNanos) {
+        this.tracing = tracing;
+        this.name = name;
+        this.inputs = inputs;
+        this.sampled = sampled;
+        this.slowThresholdNanos = slowThresholdNanos;
+        this.startTime = tracing != null ? Instant.now() : null;
+        this.startNanos = tracing != null ? System.nanoTime() : 0;
+        this.rootRun = sampled ? tracing.startRun("chain", name, inputs.get(), null, startTime, "head") : null;
+        this.spans = tracing != null ? new ArrayList<>() : null;
+    }
+
+    /**
+     * Starts a child run of this trace. The inputs are only built if the run is exported.
+     */
+    public Span startSpan(String runType, String name, Supplier<Map<String, Object>> inputs) {
+        if (tracing == null) {
+            return NOOP_SPAN;
+        }
+        Span span = new Span(this, runType, name, inputs, Instant.now());
+        if (sampled) {
+            span.run = tracing.startRun(runType, name, inputs.get(), rootRun, span.startTime, null);
+        }
+        synchronized (this) {
+            if (spans != null) {
+                spans.add(span);
+            }
+        }
+        return span;
+    }
+
+    /**
+     * Asks tail sampling to export this trace even if it is neither slow nor failed.
+     */
+    public synchronized void keep(String reason) {
+        if (keepReason == null) {
+            keepReason = reason;
+        }
+    }
+
+    /**
+     * Ends the trace, exporting it now if tail sampling keeps it. The outputs are only built if it is exported.
+     */
+    public void end(Supplier<Map<String, Object>> outputs, String error) {
+        if (tracing == null) {
+            return;
+        }
+        Instant endTime = Instant.now();
+        List<Span> ended;
+        String reason;
+        synchronized (this) {
+            ended = spans;
+            spans = null;
+            reason = keepReason;
+        }
+        if (ended == null) {
+            return;
+        }
+        if (sampled) {
+            for (Span span : ended) {
+                // Spans left open by a node that threw
+                if (span.markEnded()) {
+                    tracing.endRun(span.run, Map.of(), "Run did not complete", endTime);
+                }
+            }
+            tracing.endRun(rootRun, outputs.get(), error, endTime);
+            return;
+        }
+        if (error != null) {
+            reason = "error";
+        } else if (reason == null && System.nanoTime() - startNanos >= slowThresholdNanos) {
+            reason = "slow";
+        }
+        tracing.recordTailDecision(reason != null);
+        if (reason == null) {
+            return;
+        }
+
+        LangSmithTracingService.Run run = tracing.startRun("chain", name, inputs.get(), null, startTime,
+                "tail:" + reason);
+        for (Span span : ended) {
+            LangSmithTracingService.Run spanRun = tracing.startRun(span.runType, span.name, span.inputs.get(), run,
+                    span.startTime, null);
+            if (span.endTime != null) {
+                tracing.endRun(spanRun, span.outputs.get(), span.error, span.endTime);
+            } else {
+                tracing.endRun(spanRun, Map.of(), "Run did not complete", endTime);
+            }
+        }
+        tracing.endRun(run, outputs.get(), error, endTime);
+    }
+
+    /**
+     * A child run of a trace.
+     */
+    public static final class Span {
+        private final Trace trace;
+        private final String runType;
+        private final String name;
+        private final Supplier<Map<String, Object>> inputs;
+        private final Instant startTime;
+        private LangSmithTracingService.Run run;
+        private boolean ended;
+        private volatile Instant endTime;
+        private Supplier<Map<String, Object>> outputs;
+        private String error;
+
+        private Span(Trace trace, String runType, String name, Supplier<Map<String, Object>> inputs,
+                     Instant startTime) {
+            this.trace = trace;
+            this.runType = runType;
+            this.name = name;
+            this.inputs = inputs;
+            this.startTime = startTime;
+        }
+
+        public void end(Supplier<Map<String, Object>> outputs) {
+            end(outputs, null);
+        }
+
+        /**
+         * Ends the run. The outputs are only built if the run is exported.
+         */
+        public void end(Supplier<Map<String, Object>> outputs, String error) {
+            if (trace.tracing == null) {
+                return;
+            }
+            if (trace.sampled) {
+                if (markEnded()) {
+                    trace.tracing.endRun(run, outputs.get(), error, Instant.now());
+                }
+                return;
+            }
+            this.outputs = outputs;
+            this.error = error;
+            this.endTime = Instant.now();
+        }
+
+        /**
+         * Returns {@code true} the first time it is called, so a head-sampled run is ended only once.
+         */
+        private synchronized boolean markEnded() {
+            if (ended) {
+                return false;
+            }
+            ended = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.sachin.agentic.rag.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size-capped file of trace operations that could not be delivered to LangSmith yet.
+ * <p>
+ * Operations are appended as NDJSON, one {@code {"update": ..., "run": {...}}} object per line, and read
+ * back from the head in order. The offset of the first undelivered line is kept in a side file, so a restart
+ * neither loses nor resends runs. The file is emptied once everything in it has been delivered, and the
+ * delivered head is cut off when an append would otherwise exceed the size cap. Only the exporter's worker
+ * thread uses a spool.
+ */
+class TraceSpool implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(TraceSpool.class);
+
+    private final Path file;
+    private final Path offsetFile;
+    private final long maxBytes;
+    private final ObjectMapper objectMapper;
+
+    private FileChannel channel;
+    private long readOffset;
+    private long end;
+
+    TraceSpool(Path file, long maxBytes, ObjectMapper objectMapper) throws IOException {
+        this.file = file;
+        this.offsetFile = file.resolveSibling(file.getFileName() + ".offset");
+        this.maxBytes = maxBytes;
+        this.objectMapper = objectMapper;
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = open(file);
+        this.end = lastCompleteLine();
+        if (channel.size() > end) {
+            channel.truncate(end);
+        }
+        this.readOffset = Math.min(readOffsetFile(), end);
+        if (readOffset == end) {
+            clear();
+        } else {
+            log.info("Opened trace spool at {} with {} bytes waiting to be replayed", file, end - readOffset);
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return readOffset >= end;
+    }
+
+    /**
+     * Bytes of operations waiting to be replayed.
+     */
+    synchronized long pendingBytes() {
+        return end - readOffset;
+    }
+
+    /**
+     * Appends the operations, or appends nothing and returns {@code false} if they would not fit under the cap.
+     */
+    synchronized boolean append(List<LangSmithExporter.Operation> operations) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream(256 * operations.size());
+        for (LangSmithExporter.Operation operation : operations) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("update", operation.update());
+            line.put("run", operation.run());
+            lines.write(objectMapper.writeValueAsBytes(line));
+            lines.write('\n');
+        }
+
+        long bytes = lines.size();
+        if (end + bytes > maxBytes && readOffset > 0 && end - readOffset + bytes <= maxBytes) {
+            compact();
+        }
+        if (end + bytes > maxBytes) {
+            return false;
+        }
+        writeFully(ByteBuffer.wrap(lines.toByteArray()), end);
+        end += bytes;
+        return true;
+    }
+
+    /**
+     * Reads up to {@code max} operations from the head without removing them. Lines that cannot be parsed
+     * are skipped.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized Chunk peek(int max) throws IOException {
+        List<LangSmithExporter.Operation> operations = new ArrayList<>(Math.min(max, 1024));
+        long offset = readOffset;
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(readOffset)), 1 << 16);
+        ByteArrayOutputStream line = new ByteArrayOutputStream(1024);
+        while (operations.size() < max && offset < end) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            offset++;
+            if (b != '\n') {
+                line.write(b);
+                continue;
+            }
+            try {
+                Map<String, Object> parsed = objectMapper.readValue(line.toByteArray(), Map.class);
+                if (!(parsed.get("run") instanceof Map<?, ?> run)) {
+                    throw new IOException("line has no run");
+                }
+                operations.add(new LangSmithExporter.Operation(Boolean.TRUE.equals(parsed.get("update")),
+                        (Map<String, Object>) run));
+            } catch (IOException e) {
+                log.warn("Skipping unreadable line in trace spool {}: {}", file, e.getMessage());
+            }
+            line.reset();
+        }
+        return new Chunk(operations, offset);
+    }
+
+    /**
+     * Removes a chunk returned by {@link #peek(int)} once its operations have been delivered.
+     */
+    synchronized void remove(Chunk chunk) throws IOException {
+        readOffset = chunk.end();
+        if (readOffset >= end) {
+            clear();
+            return;
+        }
+        Path temp = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+        Files.writeString(temp, Long.toString(readOffset));
+        Files.move(temp, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(true);
+        channel.close();
+    }
+
+    private void clear() throws IOException {
+        channel.truncate(0);
+        readOffset = 0;
+        end = 0;
+        Files.deleteIfExists(offsetFile);
+    }
+
+    /**
+     * Rewrites the spool without its delivered head.
+     */
+    private void compact() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = readOffset;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, out);
+            }
+            out.force(true);
+        }
+        channel.close();
+        // A crash between these steps resends the delivered head rather than skipping undelivered runs
+        Files.deleteIfExists(offsetFile);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = open(file);
+        end -= readOffset;
+        readOffset = 0;
+    }
+
+    /**
+     * Returns the offset just past the last newline, dropping a line cut short by a crash.
+     */
+    private long lastCompleteLine() throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = size;
+        while (position > 0) {
+            int length = (int) Math.min(buffer.capacity(), position);
+            position -= length;
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private long readOffsetFile() {
+        if (!Files.exists(offsetFile)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(offsetFile, StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Ignoring unreadable trace spool offset {}, replaying from the start", offsetFile);
+            return 0;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Operations read from the head of the spool and the offset just past them.
+     */
+    record Chunk(List<LangSmithExporter.Operation> operations, long end) {
+    }
+}
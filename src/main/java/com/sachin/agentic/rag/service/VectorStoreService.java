@@ -1,66 +1,90 @@
 package com.sachin.agentic.rag.service;
 
+import com.sachin.agentic.rag.store.VectorMath;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
-import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingSearchResult;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.stream.Collectors;
 
 /**
- * Service for interacting with the vector store (In-Memory)
+ * Service for interacting with the vector store
  */
 @Service
 public class VectorStoreService {
     private static final Logger log = LoggerFactory.getLogger(VectorStoreService.class);
 
+    /**
+     * Metadata key under which retrieved documents carry their relevance score (0 to 1)
+     */
+    public static final String SCORE_METADATA_KEY = "retrieval_score";
+
     private final EmbeddingStore<TextSegment> embeddingStore;
     private final EmbeddingModel embeddingModel;
+    private final ExactMatchCache exactMatchCache;
 
-    public VectorStoreService(@Value("${openai.api.key}") String apiKey) {
-        // Using in-memory embedding store for development/testing
-        this.embeddingStore = new InMemoryEmbeddingStore<>();
-
-        this.embeddingModel = OpenAiEmbeddingModel.builder()
-                .apiKey(apiKey)
-                .modelName("text-embedding-ada-002")
-                .build();
+    public VectorStoreService(EmbeddingStore<TextSegment> embeddingStore, EmbeddingModel embeddingModel,
+                              ExactMatchCache exactMatchCache) {
+        this.embeddingStore = embeddingStore;
+        this.embeddingModel = embeddingModel;
+        this.exactMatchCache = exactMatchCache;
     }
 
     public List<Document> retrieveDocuments(String query) {
-        return retrieveDocuments(query, 4);
+        return retrieveDocuments(query, null);
+    }
+
+    public List<Document> retrieveDocuments(String query, float[] queryEmbedding) {
+        return retrieveDocuments(query, 4, queryEmbedding);
     }
 
     public List<Document> retrieveDocuments(String query, int maxResults) {
+        return retrieveDocuments(query, maxResults, null);
+    }
+
+    /**
+     * Retrieves documents for the query, searching with its embedding if the caller already computed it.
+     */
+    public List<Document> retrieveDocuments(String query, int maxResults, float[] queryEmbedding) {
+        return exactMatchCache.retrieve(query, maxResults, () -> search(query, maxResults, queryEmbedding));
+    }
+
+    /**
+     * Embeds the query as unit length, the form the store and the answer cache compare.
+     */
+    public float[] embed(String query) {
+        return VectorMath.normalize(embeddingModel.embed(query).content().vector().clone());
+    }
+
+    private List<Document> search(String query, int maxResults, float[] queryEmbedding) {
         log.info("Retrieving documents for query: {}", query);
 
-        // Embed the query
-        Embedding queryEmbedding = embeddingModel.embed(query).content();
+        // Embed the query unless the caller already did
+        Embedding embedding = queryEmbedding != null
+                ? Embedding.from(queryEmbedding)
+                : embeddingModel.embed(query).content();
 
         // Search for similar documents
         EmbeddingSearchRequest searchRequest = EmbeddingSearchRequest.builder()
-                .queryEmbedding(queryEmbedding)
+                .queryEmbedding(embedding)
                 .maxResults(maxResults)
                 .minScore(0.0)
                 .build();
 
         EmbeddingSearchResult<TextSegment> searchResult = embeddingStore.search(searchRequest);
 
-        // Convert results to documents
+        // Convert results to documents, keeping the relevance score for grading
         return searchResult.matches().stream()
-                .map(EmbeddingMatch::embedded)
-                .map(segment -> Document.from(segment.text(), segment.metadata()))
+                .map(match -> Document.from(match.embedded().text(),
+                        match.embedded().metadata().copy().put(SCORE_METADATA_KEY, match.score())))
                 .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,273 @@
+package com.sachin.agentic.rag.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Embedding model decorator that remembers every embedding it has produced, keyed by the
+ * SHA-256 of the model id and segment text, so re-ingesting unchanged content costs no calls.
+ * <p>
+ * Embeddings are appended to a single file ({@code 32-byte key, int dimension, floats}) and
+ * found through an in-memory index from key to file offset that is rebuilt on open. Records cut
+ * short by a crash are truncated away.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(CachingEmbeddingModel.class);
+
+    private static final int MAGIC = 0x52454331; // "REC1"
+    private static final int HEADER_BYTES = 8;
+    private static final int KEY_BYTES = 32;
+    private static final int RECORD_HEADER_BYTES = KEY_BYTES + Integer.BYTES;
+
+    private final EmbeddingModel delegate;
+    private final byte[] modelPrefix;
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<Key, Entry> index = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final Counter hits;
+    private final Counter misses;
+    private final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(CachingEmbeddingModel::sha256);
+
+    private long end;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelId, Path file, MeterRegistry meterRegistry)
+            throws IOException {
+        this.delegate = delegate;
+        this.modelPrefix = (modelId + '\0').getBytes(StandardCharsets.UTF_8);
+        this.file = file;
+        this.hits = meterRegistry.counter("embedding.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("embedding.cache.requests", "result", "miss");
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(0).flip();
+            writeFully(header, 0);
+            end = HEADER_BYTES;
+        } else {
+            end = loadIndex();
+            if (channel.size() > end) {
+                channel.truncate(end);
+            }
+        }
+        log.info("Opened embedding cache at {} with {} embeddings", file, index.size());
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        List<Embedding> embeddings = new ArrayList<>(segments.size());
+        // Positions of each missing text, so identical texts within one request are embedded once
+        Map<Key, List<Integer>> missing = new LinkedHashMap<>();
+        List<TextSegment> toEmbed = new ArrayList<>();
+
+        for (int i = 0; i < segments.size(); i++) {
+            Key key = key(segments.get(i).text());
+            Entry entry = index.get(key);
+            if (entry != null) {
+                embeddings.add(read(entry));
+                continue;
+            }
+            embeddings.add(null);
+            List<Integer> positions = missing.get(key);
+            if (positions == null) {
+                positions = new ArrayList<>(1);
+                missing.put(key, positions);
+                toEmbed.add(segments.get(i));
+            }
+            positions.add(i);
+        }
+
+        hits.increment(segments.size() - toEmbed.size());
+        if (toEmbed.isEmpty()) {
+            return Response.from(embeddings);
+        }
+        misses.increment(toEmbed.size());
+
+        Response<List<Embedding>> response = delegate.embedAll(toEmbed);
+        List<Embedding> computed = response.content();
+        List<Key> keys = new ArrayList<>(missing.keySet());
+        append(keys, computed);
+        for (int i = 0; i < keys.size(); i++) {
+            for (int position : missing.get(keys.get(i))) {
+                embeddings.set(position, computed.get(i));
+            }
+        }
+        return Response.from(embeddings, response.tokenUsage());
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            channel.force(true);
+            channel.close();
+        }
+    }
+
+    private void append(List<Key> keys, List<Embedding> embeddings) {
+        if (keys.size() != embeddings.size()) {
+            throw new IllegalStateException("Embedding model returned " + embeddings.size()
+                    + " embeddings for " + keys.size() + " segments");
+        }
+
+        synchronized (writeLock) {
+            // A concurrent miss on the same text may have written it while this one was being embedded
+            List<Integer> fresh = new ArrayList<>(keys.size());
+            int bytes = 0;
+            for (int i = 0; i < keys.size(); i++) {
+                if (!index.containsKey(keys.get(i))) {
+                    fresh.add(i);
+                    bytes += RECORD_HEADER_BYTES + embeddings.get(i).dimension() * Float.BYTES;
+                }
+            }
+            if (fresh.isEmpty()) {
+                return;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i : fresh) {
+                keys.get(i).writeTo(buffer);
+                float[] vector = embeddings.get(i).vector();
+                buffer.putInt(vector.length);
+                buffer.asFloatBuffer().put(vector);
+                buffer.position(buffer.position() + vector.length * Float.BYTES);
+            }
+            buffer.flip();
+
+            try {
+                long offset = end;
+                writeFully(buffer, offset);
+                end += bytes;
+                for (int i : fresh) {
+                    int dimension = embeddings.get(i).dimension();
+                    index.put(keys.get(i), new Entry(offset + RECORD_HEADER_BYTES, dimension));
+                    offset += RECORD_HEADER_BYTES + (long) dimension * Float.BYTES;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write embedding cache " + file, e);
+            }
+        }
+    }
+
+    private Embedding read(Entry entry) {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.dimension() * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, entry.offset() + buffer.position()) < 0) {
+                    throw new EOFException("Embedding cache record past end of " + file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read embedding cache " + file, e);
+        }
+        buffer.flip();
+        float[] vector = new float[entry.dimension()];
+        buffer.asFloatBuffer().get(vector);
+        return Embedding.from(vector);
+    }
+
+    /**
+     * Rebuilds the index and returns the offset just past the last complete record.
+     */
+    private long loadIndex() throws IOException {
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16);
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        if (in.readNBytes(recordHeader.array(), 0, HEADER_BYTES) != HEADER_BYTES || recordHeader.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Not an embedding cache file: " + file);
+        }
+
+        long offset = HEADER_BYTES;
+        long size = channel.size();
+        while (in.readNBytes(recordHeader.array(), 0, RECORD_HEADER_BYTES) == RECORD_HEADER_BYTES) {
+            int dimension = recordHeader.getInt(KEY_BYTES);
+            long vectorBytes = (long) dimension * Float.BYTES;
+            if (dimension <= 0 || offset + RECORD_HEADER_BYTES + vectorBytes > size) {
+                break;
+            }
+            in.skipNBytes(vectorBytes);
+            index.put(Key.from(recordHeader.array()), new Entry(offset + RECORD_HEADER_BYTES, dimension));
+            offset += RECORD_HEADER_BYTES + vectorBytes;
+        }
+        return offset;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private Key key(String text) {
+        MessageDigest sha256 = digest.get();
+        sha256.update(modelPrefix);
+        return Key.from(sha256.digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record Entry(long offset, int dimension) {
+    }
+
+    /**
+     * A SHA-256 digest held as four longs, which hash and compare cheaply as a map key.
+     */
+    private record Key(long a, long b, long c, long d) {
+
+        static Key from(byte[] digest) {
+            ByteBuffer buffer = ByteBuffer.wrap(digest, 0, KEY_BYTES);
+            return new Key(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            buffer.order(ByteOrder.BIG_ENDIAN).putLong(a).putLong(b).putLong(c).putLong(d)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.sachin.agentic.rag.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hierarchical Navigable Small World graph over the vectors of a {@link VectorSource}.
+ * <p>
+ * Inserts may run concurrently. Each node keeps one copy-on-write neighbor array per layer that
+ * is only replaced while holding the node's monitor, so searches walk the graph without locking.
+ */
+class HnswIndex {
+    // "HNS2"; graphs written before the store generation was recorded are rebuilt
+    private static final int MAGIC = 0x484E5332;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int[] NO_NEIGHBORS = new int[0];
+
+    private final VectorSource vectors;
+    private final int m;
+    private final int maxConnectionsLayer0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Object growLock = new Object();
+    private final Object entryLock = new Object();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private volatile Node[][] chunks = new Node[0][];
+    private volatile EntryPoint entryPoint;
+
+    HnswIndex(VectorSource vectors, int m, int efConstruction) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW M must be at least 2 but was " + m);
+        }
+        this.vectors = vectors;
+        this.m = m;
+        this.maxConnectionsLayer0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    boolean contains(int ordinal) {
+        return node(ordinal) != null;
+    }
+
+    void insert(int ordinal) {
+        float[] vector = vectors.vector(ordinal);
+        int level = randomLevel();
+        Node node = new Node(level);
+        setNode(ordinal, node);
+
+        EntryPoint entry = entryPoint;
+        if (entry == null) {
+            synchronized (entryLock) {
+                if (entryPoint == null) {
+                    entryPoint = new EntryPoint(ordinal, level);
+                    size.incrementAndGet();
+                    return;
+                }
+                entry = entryPoint;
+            }
+        }
+
+        List<ScoredOrdinal> nearest = List.of(
+                new ScoredOrdinal(entry.ordinal(), vectors.similarity(vector, entry.ordinal())));
+        for (int layer = entry.level(); layer > level; layer--) {
+            nearest = searchLayer(vector, nearest, 1, layer);
+        }
+        for (int layer = Math.min(level, entry.level()); layer >= 0; layer--) {
+            nearest = searchLayer(vector, nearest, efConstruction, layer);
+            int[] selected = selectNeighbors(nearest, m);
+            connect(ordinal, node, layer, selected);
+            for (int neighbor : selected) {
+                connect(neighbor, node(neighbor), layer, new int[]{ordinal});
+            }
+        }
+
+        if (level > entry.level()) {
+            synchronized (entryLock) {
+                if (level > entryPoint.level()) {
+                    entryPoint = new EntryPoint(ordinal, level);
+                }
+            }
+        }
+        size.incrementAndGet();
+    }
+
+    /**
+     * Returns up to {@code k} approximate nearest neighbors of the query, best first.
+     */
+    List<ScoredOrdinal> search(float[] query, int k, int efSearch) {
+        EntryPoint entry = entryPoint;
+        if (entry == null || k <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<ScoredOrdinal> nearest = List.of(
+                new ScoredOrdinal(entry.ordinal(), vectors.similarity(query, entry.ordinal())));
+        for (int layer = entry.level(); layer > 0; layer--) {
+            nearest = searchLayer(query, nearest, 1, layer);
+        }
+        nearest = searchLayer(query, nearest, Math.max(efSearch, k), 0);
+        return nearest.size() > k ? nearest.subList(0, k) : nearest;
+    }
+
+    /**
+     * Writes the graph, stamped with the store generation it was built at.
+     */
+    void write(Path file, int generation) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            EntryPoint entry = entryPoint;
+            Node[][] current = chunks;
+            int capacity = current.length * CHUNK_SIZE;
+
+            out.writeInt(MAGIC);
+            out.writeInt(m);
+            out.writeInt(generation);
+            out.writeInt(capacity);
+            out.writeInt(entry != null ? entry.ordinal() : -1);
+            out.writeInt(entry != null ? entry.level() : -1);
+            for (int ordinal = 0; ordinal < capacity; ordinal++) {
+                Node node = node(ordinal);
+                if (node == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                out.writeInt(node.level());
+                for (int layer = 0; layer <= node.level(); layer++) {
+                    int[] neighbors = node.neighbors.get(layer);
+                    out.writeInt(neighbors.length);
+                    for (int neighbor : neighbors) {
+                        out.writeInt(neighbor);
+                    }
+                }
+            }
+        }
+        Files.move(temp, file, java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a graph written by {@link #write(Path, int)}, or returns {@code null} when the file was
+     * built with different parameters, at another store generation, or references vectors the
+     * source no longer holds.
+     */
+    static HnswIndex read(Path file, VectorSource vectors, int m, int efConstruction, int vectorCount,
+                          int generation) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != m || in.readInt() != generation) {
+                return null;
+            }
+            HnswIndex index = new HnswIndex(vectors, m, efConstruction);
+            int capacity = in.readInt();
+            int entryOrdinal = in.readInt();
+            int entryLevel = in.readInt();
+            for (int ordinal = 0; ordinal < capacity; ordinal++) {
+                int level = in.readInt();
+                if (level < 0) {
+                    continue;
+                }
+                if (ordinal >= vectorCount) {
+                    return null;
+                }
+                Node node = new Node(level);
+                for (int layer = 0; layer <= level; layer++) {
+                    int[] neighbors = new int[in.readInt()];
+                    for (int i = 0; i < neighbors.length; i++) {
+                        neighbors[i] = in.readInt();
+                    }
+                    node.neighbors.set(layer, neighbors);
+                }
+                index.setNode(ordinal, node);
+                index.size.incrementAndGet();
+            }
+            if (entryOrdinal >= 0) {
+                index.entryPoint = new EntryPoint(entryOrdinal, entryLevel);
+            }
+            return index;
+        }
+    }
+
+    private List<ScoredOrdinal> searchLayer(float[] query, List<ScoredOrdinal> entries, int ef, int layer) {
+        BitSet visited = new BitSet();
+        PriorityQueue<ScoredOrdinal> candidates = new PriorityQueue<>(ScoredOrdinal.BEST_FIRST);
+        PriorityQueue<ScoredOrdinal> results = new PriorityQueue<>(ScoredOrdinal.WORST_FIRST);
+
+        for (ScoredOrdinal entry : entries) {
+            visited.set(entry.ordinal());
+            candidates.add(entry);
+            results.add(entry);
+            if (results.size() > ef) {
+                results.poll();
+            }
+        }
+
+        while (!candidates.isEmpty()) {
+            ScoredOrdinal closest = candidates.poll();
+            if (results.size() >= ef && closest.similarity() < results.peek().similarity()) {
+                break;
+            }
+            for (int neighbor : node(closest.ordinal()).neighbors.get(layer)) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+
+                float similarity = vectors.similarity(query, neighbor);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    ScoredOrdinal candidate = new ScoredOrdinal(neighbor, similarity);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<ScoredOrdinal> nearest = new ArrayList<>(results);
+        nearest.sort(ScoredOrdinal.BEST_FIRST);
+        return nearest;
+    }
+
+    /**
+     * Neighbor selection heuristic from the HNSW paper: a candidate is kept only if it is closer
+     * to the base vector than to every neighbor already kept, which preserves long-range links.
+     */
+    private int[] selectNeighbors(List<ScoredOrdinal> candidatesBestFirst, int max) {
+        List<ScoredOrdinal> selected = new ArrayList<>(max);
+        List<float[]> selectedVectors = new ArrayList<>(max);
+
+        for (ScoredOrdinal candidate : candidatesBestFirst) {
+            if (selected.size() >= max) {
+                break;
+            }
+            boolean diverse = true;
+            for (float[] kept : selectedVectors) {
+                if (vectors.similarity(kept, candidate.ordinal()) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+                selectedVectors.add(vectors.vector(candidate.ordinal()));
+            }
+        }
+
+        int[] ordinals = new int[selected.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = selected.get(i).ordinal();
+        }
+        return ordinals;
+    }
+
+    private void connect(int ordinal, Node node, int layer, int[] additions) {
+        int maxConnections = layer == 0 ? maxConnectionsLayer0 : m;
+
+        synchronized (node) {
+            int[] current = node.neighbors.get(layer);
+            int[] merged = Arrays.copyOf(current, current.length + additions.length);
+            int count = current.length;
+            for (int addition : additions) {
+                if (addition != ordinal && indexOf(merged, count, addition) < 0) {
+                    merged[count++] = addition;
+                }
+            }
+            if (count == current.length) {
+                return;
+            }
+            if (count <= maxConnections) {
+                node.neighbors.set(layer, Arrays.copyOf(merged, count));
+                return;
+            }
+
+            float[] base = vectors.vector(ordinal);
+            List<ScoredOrdinal> candidates = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                candidates.add(new ScoredOrdinal(merged[i], vectors.similarity(base, merged[i])));
+            }
+            candidates.sort(ScoredOrdinal.BEST_FIRST);
+            node.neighbors.set(layer, selectNeighbors(candidates, maxConnections));
+        }
+    }
+
+    private int randomLevel() {
+        double uniform = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return (int) (-Math.log(uniform) * levelMultiplier);
+    }
+
+    private Node node(int ordinal) {
+        Node[][] current = chunks;
+        int chunk = ordinal >>> CHUNK_BITS;
+        return chunk < current.length ? current[chunk][ordinal & (CHUNK_SIZE - 1)] : null;
+    }
+
+    private void setNode(int ordinal, Node node) {
+        int chunk = ordinal >>> CHUNK_BITS;
+        Node[][] current = chunks;
+        if (chunk >= current.length) {
+            synchronized (growLock) {
+                current = chunks;
+                if (chunk >= current.length) {
+                    Node[][] grown = Arrays.copyOf(current, chunk + 1);
+                    for (int i = current.length; i < grown.length; i++) {
+                        grown[i] = new Node[CHUNK_SIZE];
+                    }
+                    chunks = grown;
+                    current = grown;
+                }
+            }
+        }
+        current[chunk][ordinal & (CHUNK_SIZE - 1)] = node;
+    }
+
+    private static int indexOf(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Node {
+        final AtomicReferenceArray<int[]> neighbors;
+
+        Node(int level) {
+            this.neighbors = new AtomicReferenceArray<>(level + 1);
+            for (int layer = 0; layer <= level; layer++) {
+                neighbors.set(layer, NO_NEIGHBORS);
+            }
+        }
+
+        int level() {
+            return neighbors.length() - 1;
+        }
+    }
+
+    private record EntryPoint(int ordinal, int level) {
+    }
+}
@@ -0,0 +1,802 @@
+package com.sachin.agentic.rag.store;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Embedding store backed by memory-mapped files.
+ * <p>
+ * Vectors are kept as fixed-size records in {@code vectors.bin}, which is mapped into memory
+ * in regions so the OS pages the corpus in and out instead of the JVM heap holding it.
+ * Segment text and metadata are appended as JSON lines to {@code segments.jsonl} and are only
+ * read back for search results. Reopening an existing directory only maps the files, so the
+ * index is available again without re-embedding anything.
+ * <p>
+ * Vectors are normalized to unit length when they are added, so scoring a query against the
+ * store only needs a dot product per vector (see {@link VectorMath}).
+ * <p>
+ * Searches either scan every stored vector ({@link SearchMode#EXACT}) or walk an HNSW graph
+ * ({@link SearchMode#HNSW}) that is kept in memory and written next to the vectors on close.
+ * The header records which embedding model produced the vectors; opening a non-empty store with a
+ * different model fails instead of silently comparing vectors from two embedding spaces.
+ * With quantization enabled, the exact scan runs over int8 codes in {@code vectors.q8} and only
+ * the best candidates are re-scored against the full-precision vectors.
+ */
+public class MappedEmbeddingStore implements EmbeddingStore<TextSegment>, VectorSource, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(MappedEmbeddingStore.class);
+
+    static final String VECTORS_FILE = "vectors.bin";
+    static final String SEGMENTS_FILE = "segments.jsonl";
+    static final String GRAPH_FILE = "hnsw.graph";
+    static final String QUANTIZED_FILE = "vectors.q8";
+
+    private static final int MAGIC = 0x52414756; // "RAGV"
+    private static final int VERSION = 2;
+    private static final int UNNORMALIZED_VERSION = 1;
+
+    // Header layout: magic, version, dimension, generation, record count, model id length, model id (UTF-8).
+    // The generation counts removeAll calls, so files derived from earlier content can be told apart
+    private static final int HEADER_BYTES = 64;
+    private static final int DIMENSION_OFFSET = 8;
+    private static final int GENERATION_OFFSET = 12;
+    private static final int COUNT_OFFSET = 16;
+    private static final int MODEL_ID_OFFSET = 24;
+    private static final int MAX_MODEL_ID_BYTES = HEADER_BYTES - MODEL_ID_OFFSET - Integer.BYTES;
+
+    // Record layout: segment offset (long), segment length (int), reserved (int), vector (float[dimension])
+    private static final int RECORD_HEADER_BYTES = 16;
+    private static final long REGION_BYTES = 64L * 1024 * 1024;
+
+    private final Path directory;
+    private final String embeddingModelId;
+    private final SearchMode searchMode;
+    private final int hnswM;
+    private final int hnswEfConstruction;
+    private final int hnswEfSearch;
+    private final boolean quantization;
+    private final int rerankOversample;
+    private final FileChannel vectorChannel;
+    private final FileChannel segmentChannel;
+    private final MappedByteBuffer header;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Held by whole adds, removeAll and close, always before searchLock, so no add ever sees the layout reset
+    private final Object writeLock = new Object();
+    private final ShardedScanner scanner;
+    private final ThreadLocal<float[]> scratch = ThreadLocal.withInitial(() -> new float[0]);
+    private final AtomicLong epoch = new AtomicLong();
+    // Searches hold the read lock; removeAll, close and swapping the quantized codes hold the write lock,
+    // so a search never sees the layout torn down or its quantized codes closed under it
+    private final ReadWriteLock searchLock = new ReentrantReadWriteLock();
+
+    private int dimension;
+    private int recordBytes;
+    private int recordsPerRegion;
+    private long segmentEnd;
+
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    private volatile FloatBuffer[] regionFloats = new FloatBuffer[0];
+    private volatile int size;
+    private volatile HnswIndex hnswIndex;
+    private volatile QuantizedVectors quantized;
+
+    private MappedEmbeddingStore(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.embeddingModelId = builder.embeddingModelId;
+        this.searchMode = builder.searchMode;
+        this.hnswM = builder.hnswM;
+        this.hnswEfConstruction = builder.hnswEfConstruction;
+        this.hnswEfSearch = builder.hnswEfSearch;
+        this.quantization = builder.quantization;
+        this.rerankOversample = Math.max(1, builder.rerankOversample);
+        this.scanner = new ShardedScanner(builder.searchShards);
+        Files.createDirectories(directory);
+
+        this.vectorChannel = FileChannel.open(directory.resolve(VECTORS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.segmentChannel = FileChannel.open(directory.resolve(SEGMENTS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        this.header = vectorChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (header.getInt(0) == 0) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(DIMENSION_OFFSET, 0);
+            header.putLong(COUNT_OFFSET, 0);
+        } else if (header.getInt(0) != MAGIC
+                || (header.getInt(4) != VERSION && header.getInt(4) != UNNORMALIZED_VERSION)) {
+            throw new IllegalStateException("Not a supported vector store file: " + directory.resolve(VECTORS_FILE));
+        }
+
+        int storedDimension = header.getInt(DIMENSION_OFFSET);
+        int storedSize = (int) header.getLong(COUNT_OFFSET);
+        if (embeddingModelId != null) {
+            String storedModelId = readModelId();
+            if (storedSize == 0) {
+                // An empty store takes on whatever model (and dimension) it is now used with
+                storedDimension = 0;
+                header.putInt(DIMENSION_OFFSET, 0);
+                writeModelId(embeddingModelId);
+            } else if (storedModelId == null) {
+                log.warn("Vector store at {} does not record its embedding model, assuming {}", directory, embeddingModelId);
+                writeModelId(embeddingModelId);
+            } else if (!storedModelId.equals(embeddingModelId)) {
+                throw new IllegalStateException("Vector store at " + directory + " was built with embedding model '"
+                        + storedModelId + "' but is being opened for '" + embeddingModelId
+                        + "'; re-ingest into an empty vectorstore.path to switch models");
+            }
+        }
+        if (storedDimension > 0) {
+            initLayout(storedDimension);
+            ensureCapacity(storedSize);
+        }
+        this.size = storedSize;
+
+        if (header.getInt(4) == UNNORMALIZED_VERSION) {
+            normalizeStoredVectors(storedSize);
+        }
+
+        // Anything after the last committed segment was written by an add that never completed
+        this.segmentEnd = storedSize == 0 ? 0 : segmentOffset(storedSize - 1) + segmentLength(storedSize - 1) + 1;
+        if (segmentChannel.size() > segmentEnd) {
+            segmentChannel.truncate(segmentEnd);
+        }
+
+        if (searchMode == SearchMode.HNSW) {
+            this.hnswIndex = openHnswIndex();
+        }
+        if (quantization && dimension > 0) {
+            this.quantized = QuantizedVectors.open(directory.resolve(QUANTIZED_FILE), this, dimension, storedSize);
+        }
+
+        log.info("Opened vector store at {} with {} embeddings ({} search, {} shards)",
+                directory, storedSize, searchMode, scanner.shards());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * The embedding model recorded in the store header, or {@code null} if none was recorded.
+     */
+    public String getEmbeddingModelId() {
+        return readModelId();
+    }
+
+    public SearchMode getSearchMode() {
+        return searchMode;
+    }
+
+    public boolean isQuantized() {
+        return quantization;
+    }
+
+    /**
+     * Counter that changes whenever the stored content changes, so anything derived from the store
+     * can tell it is stale. It restarts when the store is reopened.
+     */
+    public long getEpoch() {
+        return epoch.get();
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        append(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment segment) {
+        String id = UUID.randomUUID().toString();
+        append(List.of(id), List.of(embedding), List.of(segment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = randomIds(embeddings.size());
+        append(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> segments) {
+        if (embeddings.size() != segments.size()) {
+            throw new IllegalArgumentException("The list of embeddings and segments must have the same size");
+        }
+        List<String> ids = randomIds(embeddings.size());
+        append(ids, embeddings, segments);
+        return ids;
+    }
+
+    @Override
+    public void removeAll() {
+        synchronized (writeLock) {
+            searchLock.writeLock().lock();
+            try {
+                header.putLong(COUNT_OFFSET, 0);
+                size = 0;
+                segmentChannel.truncate(0);
+                segmentEnd = 0;
+
+                // Forget the layout so the next add may use a different dimension
+                header.putInt(DIMENSION_OFFSET, 0);
+                dimension = 0;
+                regions = new MappedByteBuffer[0];
+                regionFloats = new FloatBuffer[0];
+
+                header.putInt(GENERATION_OFFSET, header.getInt(GENERATION_OFFSET) + 1);
+
+                // Deleted even when this store does not use HNSW, so a later HNSW open cannot load a graph
+                // over vectors it was not built from
+                if (hnswIndex != null) {
+                    hnswIndex = new HnswIndex(this, hnswM, hnswEfConstruction);
+                }
+                Files.deleteIfExists(directory.resolve(GRAPH_FILE));
+                if (quantized != null) {
+                    quantized.close();
+                    quantized = null;
+                }
+                Files.deleteIfExists(directory.resolve(QUANTIZED_FILE));
+                epoch.incrementAndGet();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to clear vector store at " + directory, e);
+            } finally {
+                searchLock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        searchLock.readLock().lock();
+        try {
+            if (size == 0) {
+                return new EmbeddingSearchResult<>(Collections.emptyList());
+            }
+            checkDimension(request.queryEmbedding().dimension());
+            float[] query = VectorMath.normalize(request.queryEmbedding().vector().clone());
+
+            // Metadata filters need every candidate's segment, which only the exact scan can afford
+            HnswIndex index = hnswIndex;
+            List<ScoredOrdinal> nearest = index != null && request.filter() == null
+                    ? index.search(query, request.maxResults(), hnswEfSearch)
+                    : quantized != null && request.filter() == null
+                    ? quantizedSearch(query, request.maxResults(), rerankOversample)
+                    : exactSearch(query, request.maxResults(), request);
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(nearest.size());
+            for (ScoredOrdinal candidate : nearest) {
+                double score = RelevanceScore.fromCosineSimilarity(candidate.similarity());
+                if (score < request.minScore()) {
+                    continue;
+                }
+                StoredSegment stored = readSegment(candidate.ordinal());
+                matches.add(new EmbeddingMatch<>(score, stored.id(),
+                        Embedding.from(vector(candidate.ordinal())), stored.segment()));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            searchLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compares approximate HNSW results against exact search for a sample of stored vectors,
+     * once for each efSearch value, to help pick efSearch for a latency budget.
+     */
+    public RecallReport recallReport(int k, int sampleSize, int... efSearchValues) {
+        HnswIndex index = hnswIndex;
+        if (index == null) {
+            throw new IllegalStateException("Recall can only be measured when HNSW search is enabled");
+        }
+        searchLock.readLock().lock();
+        try {
+            return RecallReport.measure("efSearch", this, size, k, sampleSize,
+                    query -> exactSearch(query, k, null),
+                    (query, efSearch) -> index.search(query, k, efSearch),
+                    efSearchValues);
+        } finally {
+            searchLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compares the int8 first pass plus float re-ranking against exact search, once for each
+     * oversampling factor (how many candidates per requested result are re-ranked).
+     */
+    public RecallReport quantizationRecallReport(int k, int sampleSize, int... oversampleValues) {
+        searchLock.readLock().lock();
+        try {
+            if (quantized == null) {
+                throw new IllegalStateException("Recall can only be measured when quantization is enabled");
+            }
+            return RecallReport.measure("oversample", this, size, k, sampleSize,
+                    query -> exactSearch(query, k, null),
+                    (query, oversample) -> quantizedSearch(query, k, oversample),
+                    oversampleValues);
+        } finally {
+            searchLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public float[] vector(int ordinal) {
+        float[] vector = new float[dimension];
+        regionFloats[ordinal / recordsPerRegion].get(vectorIndex(ordinal), vector);
+        return vector;
+    }
+
+    /**
+     * Cosine similarity for a unit-length query, since stored vectors are unit length too.
+     */
+    @Override
+    public float similarity(float[] query, int ordinal) {
+        float[] stored = scratch.get();
+        if (stored.length != dimension) {
+            stored = new float[dimension];
+            scratch.set(stored);
+        }
+        regionFloats[ordinal / recordsPerRegion].get(vectorIndex(ordinal), stored);
+        return VectorMath.dot(query, stored);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            searchLock.writeLock().lock();
+            try {
+                if (hnswIndex != null) {
+                    hnswIndex.write(directory.resolve(GRAPH_FILE), header.getInt(GENERATION_OFFSET));
+                }
+                if (quantized != null) {
+                    quantized.close();
+                }
+                scanner.close();
+                for (MappedByteBuffer region : regions) {
+                    region.force();
+                }
+                header.force();
+                segmentChannel.force(true);
+                vectorChannel.close();
+                segmentChannel.close();
+            } finally {
+                searchLock.writeLock().unlock();
+            }
+        }
+        log.info("Closed vector store at {} with {} embeddings", directory, size);
+    }
+
+    private void append(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        if (embeddings.isEmpty()) {
+            return;
+        }
+
+        // The graph and codes are updated under the same lock as the records, so a concurrent removeAll
+        // cannot reset the layout they read
+        synchronized (writeLock) {
+            int base = appendRecords(ids, embeddings, segments);
+
+            HnswIndex index = hnswIndex;
+            if (index != null) {
+                IntStream.range(base, base + ids.size()).parallel().forEach(index::insert);
+            }
+            if (quantization) {
+                updateQuantized();
+            }
+            epoch.incrementAndGet();
+        }
+    }
+
+    /**
+     * Quantizes newly added vectors, recalibrating from scratch whenever the store has doubled
+     * since the last calibration so the per-dimension ranges track the data at amortized O(1) cost.
+     * Called with {@code writeLock} held.
+     */
+    private void updateQuantized() {
+        try {
+            int count = size;
+            QuantizedVectors current = quantized;
+            if (current == null || count >= 2 * Math.max(1, current.calibratedCount())) {
+                QuantizedVectors rebuilt = QuantizedVectors.build(directory.resolve(QUANTIZED_FILE), this,
+                        dimension, count);
+                searchLock.writeLock().lock();
+                try {
+                    quantized = rebuilt;
+                    if (current != null) {
+                        current.close();
+                    }
+                } finally {
+                    searchLock.writeLock().unlock();
+                }
+            } else {
+                current.append(current.size(), count);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to update quantized vectors in " + directory, e);
+        }
+    }
+
+    /**
+     * Writes segments and vectors and commits the new record count, returning the first new ordinal.
+     * Called with {@code writeLock} held.
+     */
+    private int appendRecords(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        if (dimension == 0) {
+            initLayout(embeddings.get(0).dimension());
+            header.putInt(DIMENSION_OFFSET, dimension);
+        }
+        for (Embedding embedding : embeddings) {
+            checkDimension(embedding.dimension());
+        }
+
+        try {
+            // Text goes to disk first so a committed record never points at missing text
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            long[] offsets = new long[ids.size()];
+            int[] lengths = new int[ids.size()];
+            for (int i = 0; i < ids.size(); i++) {
+                byte[] line = encodeSegment(ids.get(i), segments != null ? segments.get(i) : null);
+                offsets[i] = segmentEnd + lines.size();
+                lengths[i] = line.length;
+                lines.write(line);
+                lines.write('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+            long position = segmentEnd;
+            while (buffer.hasRemaining()) {
+                position += segmentChannel.write(buffer, position);
+            }
+
+            int base = size;
+            ensureCapacity(base + ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                float[] unit = VectorMath.normalize(embeddings.get(i).vector().clone());
+                writeRecord(base + i, offsets[i], lengths[i], unit);
+            }
+
+            segmentEnd = position;
+            header.putLong(COUNT_OFFSET, base + ids.size());
+            size = base + ids.size();
+            return base;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to vector store at " + directory, e);
+        }
+    }
+
+    private List<ScoredOrdinal> exactSearch(float[] query, int maxResults, EmbeddingSearchRequest request) {
+        boolean filtered = request != null && request.filter() != null;
+        return scanner.topK(size, maxResults, (from, to, topK) -> {
+            for (int ordinal = from; ordinal < to; ordinal++) {
+                float similarity = similarity(query, ordinal);
+                if (topK.accepts(similarity) && (!filtered || matchesFilter(request, ordinal))) {
+                    topK.offer(ordinal, similarity);
+                }
+            }
+        });
+    }
+
+    /**
+     * Scans the int8 codes for {@code maxResults * oversample} candidates and re-ranks them with
+     * the full-precision vectors. Vectors added after the last quantization are scored exactly.
+     */
+    private List<ScoredOrdinal> quantizedSearch(float[] query, int maxResults, int oversample) {
+        QuantizedVectors codes = quantized;
+        int count = size;
+        int quantizedCount = Math.min(codes.size(), count);
+        QuantizedVectors.Query prepared = codes.prepare(query);
+        List<ScoredOrdinal> candidates = scanner.topK(quantizedCount, maxResults * oversample,
+                (from, to, topK) -> codes.scan(prepared, from, to, topK));
+
+        TopK topK = new TopK(maxResults);
+        for (ScoredOrdinal candidate : candidates) {
+            topK.offer(candidate.ordinal(), similarity(query, candidate.ordinal()));
+        }
+        for (int ordinal = quantizedCount; ordinal < count; ordinal++) {
+            topK.offer(ordinal, similarity(query, ordinal));
+        }
+        return topK.toSortedList();
+    }
+
+    private HnswIndex openHnswIndex() throws IOException {
+        long start = System.nanoTime();
+        Path graphFile = directory.resolve(GRAPH_FILE);
+
+        HnswIndex index = null;
+        if (Files.exists(graphFile)) {
+            index = HnswIndex.read(graphFile, this, hnswM, hnswEfConstruction, size, header.getInt(GENERATION_OFFSET));
+        }
+        if (index == null) {
+            index = new HnswIndex(this, hnswM, hnswEfConstruction);
+        }
+
+        HnswIndex loaded = index;
+        int loadedSize = loaded.size();
+        IntStream.range(0, size).parallel()
+                .filter(ordinal -> !loaded.contains(ordinal))
+                .forEach(loaded::insert);
+
+        log.info("HNSW index ready with {} nodes ({} loaded from disk) in {} ms",
+                loaded.size(), loadedSize, (System.nanoTime() - start) / 1_000_000);
+        return loaded;
+    }
+
+    /**
+     * Upgrades a store written before vectors were normalized on insert.
+     */
+    private void normalizeStoredVectors(int count) {
+        log.info("Normalizing {} stored vectors in {}", count, directory);
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            FloatBuffer floats = regionFloats[ordinal / recordsPerRegion];
+            float[] vector = vector(ordinal);
+            floats.put(vectorIndex(ordinal), VectorMath.normalize(vector));
+        }
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+        header.putInt(4, VERSION);
+    }
+
+    private void initLayout(int dimension) {
+        this.dimension = dimension;
+        this.recordBytes = RECORD_HEADER_BYTES + dimension * Float.BYTES;
+        this.recordsPerRegion = (int) Math.max(1, REGION_BYTES / recordBytes);
+    }
+
+    private void ensureCapacity(int records) {
+        int needed = (records + recordsPerRegion - 1) / recordsPerRegion;
+        MappedByteBuffer[] current = regions;
+        if (needed <= current.length) {
+            return;
+        }
+
+        MappedByteBuffer[] grown = Arrays.copyOf(current, needed);
+        FloatBuffer[] grownFloats = Arrays.copyOf(regionFloats, needed);
+        long regionSize = (long) recordsPerRegion * recordBytes;
+        try {
+            for (int r = current.length; r < needed; r++) {
+                MappedByteBuffer region = vectorChannel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_BYTES + r * regionSize, regionSize);
+                region.order(ByteOrder.LITTLE_ENDIAN);
+                grown[r] = region;
+                grownFloats[r] = region.asFloatBuffer();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map vector store region in " + directory, e);
+        }
+        regionFloats = grownFloats;
+        regions = grown;
+    }
+
+    private void writeRecord(int ordinal, long segmentOffset, int segmentLength, float[] vector) {
+        MappedByteBuffer region = regions[ordinal / recordsPerRegion];
+        int position = (ordinal % recordsPerRegion) * recordBytes;
+        region.putLong(position, segmentOffset);
+        region.putInt(position + 8, segmentLength);
+        region.putInt(position + 12, 0);
+        regionFloats[ordinal / recordsPerRegion].put(vectorIndex(ordinal), vector);
+    }
+
+    private int vectorIndex(int ordinal) {
+        return ((ordinal % recordsPerRegion) * recordBytes + RECORD_HEADER_BYTES) / Float.BYTES;
+    }
+
+    private long segmentOffset(int ordinal) {
+        return regions[ordinal / recordsPerRegion].getLong((ordinal % recordsPerRegion) * recordBytes);
+    }
+
+    private int segmentLength(int ordinal) {
+        return regions[ordinal / recordsPerRegion].getInt((ordinal % recordsPerRegion) * recordBytes + 8);
+    }
+
+    private boolean matchesFilter(EmbeddingSearchRequest request, int ordinal) {
+        TextSegment segment = readSegment(ordinal).segment();
+        return segment != null && request.filter().test(segment.metadata());
+    }
+
+    private String readModelId() {
+        int length = header.getInt(MODEL_ID_OFFSET);
+        if (length <= 0 || length > MAX_MODEL_ID_BYTES) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        header.get(MODEL_ID_OFFSET + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeModelId(String modelId) {
+        byte[] bytes = modelId.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_MODEL_ID_BYTES) {
+            throw new IllegalArgumentException("Embedding model id '" + modelId + "' is longer than "
+                    + MAX_MODEL_ID_BYTES + " bytes");
+        }
+        header.put(MODEL_ID_OFFSET + Integer.BYTES, bytes);
+        header.putInt(MODEL_ID_OFFSET, bytes.length);
+    }
+
+    private void checkDimension(int actual) {
+        if (actual != dimension) {
+            throw new IllegalArgumentException(
+                    "Embedding dimension " + actual + " does not match store dimension " + dimension);
+        }
+    }
+
+    private byte[] encodeSegment(String id, TextSegment segment) throws IOException {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("id", id);
+        if (segment != null) {
+            node.put("text", segment.text());
+            node.set("metadata", objectMapper.valueToTree(segment.metadata().toMap()));
+        }
+        return objectMapper.writeValueAsBytes(node);
+    }
+
+    @SuppressWarnings("unchecked")
+    StoredSegment readSegment(int ordinal) {
+        ByteBuffer buffer = ByteBuffer.allocate(segmentLength(ordinal));
+        long position = segmentOffset(ordinal);
+        try {
+            while (buffer.hasRemaining()) {
+                int read = segmentChannel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    throw new IOException("Unexpected end of segment file at ordinal " + ordinal);
+                }
+            }
+            JsonNode node = objectMapper.readTree(buffer.array());
+            String id = node.get("id").asText();
+            if (!node.hasNonNull("text")) {
+                return new StoredSegment(id, null);
+            }
+            Map<String, Object> metadata = objectMapper.treeToValue(node.get("metadata"), Map.class);
+            return new StoredSegment(id, TextSegment.from(node.get("text").asText(), Metadata.from(metadata)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read segment " + ordinal + " from " + directory, e);
+        }
+    }
+
+    private static List<String> randomIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        return ids;
+    }
+
+    record StoredSegment(String id, TextSegment segment) {
+    }
+
+    /**
+     * How the store answers nearest-neighbor queries
+     */
+    public enum SearchMode {
+        /** Scan every stored vector; always returns the true top-k */
+        EXACT,
+        /** Walk the HNSW graph; much faster on large stores at a small recall cost */
+        HNSW
+    }
+
+    public static class Builder {
+        private Path directory;
+        private String embeddingModelId;
+        private SearchMode searchMode = SearchMode.EXACT;
+        private int hnswM = 16;
+        private int hnswEfConstruction = 200;
+        private int hnswEfSearch = 64;
+        private boolean quantization;
+        private int rerankOversample = 4;
+        private int searchShards;
+
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Identifies the model that produces this store's vectors, e.g. {@code openai:text-embedding-ada-002}.
+         */
+        public Builder embeddingModelId(String embeddingModelId) {
+            this.embeddingModelId = embeddingModelId;
+            return this;
+        }
+
+        public Builder searchMode(SearchMode searchMode) {
+            this.searchMode = searchMode;
+            return this;
+        }
+
+        public Builder hnswM(int hnswM) {
+            this.hnswM = hnswM;
+            return this;
+        }
+
+        public Builder hnswEfConstruction(int hnswEfConstruction) {
+            this.hnswEfConstruction = hnswEfConstruction;
+            return this;
+        }
+
+        public Builder hnswEfSearch(int hnswEfSearch) {
+            this.hnswEfSearch = hnswEfSearch;
+            return this;
+        }
+
+        public Builder quantization(boolean quantization) {
+            this.quantization = quantization;
+            return this;
+        }
+
+        public Builder rerankOversample(int rerankOversample) {
+            this.rerankOversample = rerankOversample;
+            return this;
+        }
+
+        /**
+         * Number of shards an exact scan is split into; zero or less means one per available core.
+         */
+        public Builder searchShards(int searchShards) {
+            this.searchShards = searchShards;
+            return this;
+        }
+
+        public MappedEmbeddingStore build() throws IOException {
+            if (directory == null) {
+                throw new IllegalArgumentException("Vector store directory is required");
+            }
+            return new MappedEmbeddingStore(this);
+        }
+    }
+}
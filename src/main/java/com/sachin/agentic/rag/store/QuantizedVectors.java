@@ -0,0 +1,247 @@
+package com.sachin.agentic.rag.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Int8 scalar-quantized copy of the store's vectors, used for a cheap first-pass scan.
+ * <p>
+ * Each dimension is calibrated independently to its observed [min, max] range and mapped onto
+ * 256 levels, so a 1536-dimension vector takes 1.5 KB instead of 6 KB. Queries stay in full
+ * precision: with {@code x ≈ min + (code + 128) * step}, the dot product becomes a constant plus
+ * {@code Σ (query * step) * code}, a float-by-byte dot product per stored vector.
+ * <p>
+ * File layout of {@code vectors.q8}: a header (magic, dimension, count, calibrated count), then
+ * the per-dimension minimum and step as floats, then one {@code dimension}-byte record per vector.
+ */
+final class QuantizedVectors implements Closeable {
+    private static final int MAGIC = 0x52514938; // "RQI8"
+    private static final int HEADER_BYTES = 64;
+    private static final int DIMENSION_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+    private static final int CALIBRATED_COUNT_OFFSET = 16;
+    private static final long REGION_BYTES = 64L * 1024 * 1024;
+    private static final int LEVELS = 255;
+
+    private final Path file;
+    private final VectorSource source;
+    private final int dimension;
+    private final float[] minimum;
+    private final float[] step;
+    private final int calibratedCount;
+    private final int codesPerRegion;
+    private final long codesOffset;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final ThreadLocal<byte[]> scratch;
+
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    private volatile int size;
+
+    private QuantizedVectors(Path file, VectorSource source, int dimension, float[] minimum, float[] step,
+                             int calibratedCount, FileChannel channel, MappedByteBuffer header) {
+        this.file = file;
+        this.source = source;
+        this.dimension = dimension;
+        this.minimum = minimum;
+        this.step = step;
+        this.calibratedCount = calibratedCount;
+        this.codesPerRegion = (int) Math.max(1, REGION_BYTES / dimension);
+        this.codesOffset = HEADER_BYTES + 2L * dimension * Float.BYTES;
+        this.channel = channel;
+        this.header = header;
+        this.scratch = ThreadLocal.withInitial(() -> new byte[dimension]);
+    }
+
+    /**
+     * Opens the quantized file if it matches the store, appending codes for any vectors added
+     * since it was last written; otherwise recalibrates over all stored vectors.
+     */
+    static QuantizedVectors open(Path file, VectorSource source, int dimension, int count) throws IOException {
+        if (Files.exists(file)) {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() >= HEADER_BYTES) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                int storedCount = (int) header.getLong(COUNT_OFFSET);
+                if (header.getInt(0) == MAGIC && header.getInt(DIMENSION_OFFSET) == dimension && storedCount <= count) {
+                    QuantizedVectors quantized = load(file, source, dimension, channel, header, storedCount);
+                    quantized.append(storedCount, count);
+                    return quantized;
+                }
+            }
+            channel.close();
+        }
+        return build(file, source, dimension, count);
+    }
+
+    /**
+     * Calibrates every dimension over the first {@code count} stored vectors and writes a fresh file.
+     */
+    static QuantizedVectors build(Path file, VectorSource source, int dimension, int count) throws IOException {
+        float[] minimum = new float[dimension];
+        float[] maximum = new float[dimension];
+        Arrays.fill(minimum, Float.POSITIVE_INFINITY);
+        Arrays.fill(maximum, Float.NEGATIVE_INFINITY);
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            float[] vector = source.vector(ordinal);
+            for (int d = 0; d < dimension; d++) {
+                minimum[d] = Math.min(minimum[d], vector[d]);
+                maximum[d] = Math.max(maximum[d], vector[d]);
+            }
+        }
+
+        float[] step = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            if (count == 0) {
+                // Unit vectors never leave [-1, 1], which is a safe range until real data arrives
+                minimum[d] = -1;
+                maximum[d] = 1;
+            }
+            step[d] = Math.max(maximum[d] - minimum[d], Float.MIN_NORMAL) / LEVELS;
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + 2L * dimension * Float.BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(0, MAGIC);
+            header.putInt(DIMENSION_OFFSET, dimension);
+            header.putLong(COUNT_OFFSET, 0);
+            header.putLong(CALIBRATED_COUNT_OFFSET, count);
+            for (int d = 0; d < dimension; d++) {
+                header.putFloat(HEADER_BYTES + d * Float.BYTES, minimum[d]);
+                header.putFloat(HEADER_BYTES + (dimension + d) * Float.BYTES, step[d]);
+            }
+            header.force();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        QuantizedVectors quantized = new QuantizedVectors(file, source, dimension, minimum, step, count, channel, header);
+        quantized.append(0, count);
+        return quantized;
+    }
+
+    private static QuantizedVectors load(Path file, VectorSource source, int dimension, FileChannel channel,
+                                         MappedByteBuffer header, int storedCount) throws IOException {
+        MappedByteBuffer calibration = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                2L * dimension * Float.BYTES);
+        calibration.order(ByteOrder.LITTLE_ENDIAN);
+        float[] minimum = new float[dimension];
+        float[] step = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            minimum[d] = calibration.getFloat(d * Float.BYTES);
+            step[d] = calibration.getFloat((dimension + d) * Float.BYTES);
+        }
+
+        int calibratedCount = (int) header.getLong(CALIBRATED_COUNT_OFFSET);
+        QuantizedVectors quantized = new QuantizedVectors(file, source, dimension, minimum, step,
+                calibratedCount, channel, header);
+        quantized.ensureCapacity(storedCount);
+        quantized.size = storedCount;
+        return quantized;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Number of vectors the per-dimension ranges were calibrated on.
+     */
+    int calibratedCount() {
+        return calibratedCount;
+    }
+
+    /**
+     * Quantizes stored vectors {@code [from, to)}; values outside the calibrated range are clamped.
+     */
+    void append(int from, int to) {
+        if (to <= from) {
+            return;
+        }
+        ensureCapacity(to);
+        byte[] codes = new byte[dimension];
+        for (int ordinal = from; ordinal < to; ordinal++) {
+            float[] vector = source.vector(ordinal);
+            for (int d = 0; d < dimension; d++) {
+                int level = Math.round((vector[d] - minimum[d]) / step[d]);
+                codes[d] = (byte) (Math.max(0, Math.min(LEVELS, level)) - 128);
+            }
+            regions[ordinal / codesPerRegion].put((ordinal % codesPerRegion) * dimension, codes);
+        }
+        header.putLong(COUNT_OFFSET, to);
+        size = to;
+    }
+
+    /**
+     * Folds the calibration into the query once, so each stored vector costs one float-by-byte dot product.
+     */
+    Query prepare(float[] query) {
+        float[] weights = new float[dimension];
+        float offset = 0;
+        for (int d = 0; d < dimension; d++) {
+            weights[d] = query[d] * step[d];
+            offset += query[d] * minimum[d] + 128 * weights[d];
+        }
+        return new Query(weights, offset);
+    }
+
+    /**
+     * Adds the approximate similarities of codes {@code [from, to)} to the heap.
+     */
+    void scan(Query query, int from, int to, TopK topK) {
+        MappedByteBuffer[] current = regions;
+        byte[] codes = scratch.get();
+        for (int ordinal = from; ordinal < to; ordinal++) {
+            current[ordinal / codesPerRegion].get((ordinal % codesPerRegion) * dimension, codes);
+            topK.offer(ordinal, query.offset() + VectorMath.dot(query.weights(), codes));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+        header.force();
+        channel.close();
+    }
+
+    private void ensureCapacity(int codes) {
+        int needed = (codes + codesPerRegion - 1) / codesPerRegion;
+        MappedByteBuffer[] current = regions;
+        if (needed <= current.length) {
+            return;
+        }
+
+        MappedByteBuffer[] grown = Arrays.copyOf(current, needed);
+        long regionSize = (long) codesPerRegion * dimension;
+        try {
+            for (int r = current.length; r < needed; r++) {
+                grown[r] = channel.map(FileChannel.MapMode.READ_WRITE, codesOffset + r * regionSize, regionSize);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map quantized vector region in " + file, e);
+        }
+        regions = grown;
+    }
+
+    record Query(float[] weights, float offset) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.sachin.agentic.rag.store;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Recall@k and mean latency of an approximate search compared with exact search, per value of the
+ * search parameter being tuned (efSearch for HNSW, oversampling for quantized search)
+ */
+public class RecallReport {
+
+    private final String parameterName;
+    private final int k;
+    private final int sampleSize;
+    private final List<Row> rows;
+
+    RecallReport(String parameterName, int k, int sampleSize, List<Row> rows) {
+        this.parameterName = parameterName;
+        this.k = k;
+        this.sampleSize = sampleSize;
+        this.rows = rows;
+    }
+
+    /**
+     * Uses a fixed random sample of stored vectors as queries so repeated runs are comparable.
+     */
+    static RecallReport measure(String parameterName, VectorSource vectors, int count, int k, int sampleSize,
+                                Function<float[], List<ScoredOrdinal>> exact,
+                                BiFunction<float[], Integer, List<ScoredOrdinal>> approximate,
+                                int... parameterValues) {
+        Random random = new Random(42);
+        int samples = Math.min(sampleSize, count);
+        List<float[]> queries = new ArrayList<>(samples);
+        List<Set<Integer>> truth = new ArrayList<>(samples);
+        for (int i = 0; i < samples; i++) {
+            float[] query = vectors.vector(random.nextInt(count));
+            queries.add(query);
+            truth.add(ordinals(exact.apply(query)));
+        }
+
+        List<Row> rows = new ArrayList<>(parameterValues.length);
+        for (int parameter : parameterValues) {
+            long hits = 0;
+            long expected = 0;
+            long elapsedNanos = 0;
+            for (int i = 0; i < samples; i++) {
+                long start = System.nanoTime();
+                List<ScoredOrdinal> found = approximate.apply(queries.get(i), parameter);
+                elapsedNanos += System.nanoTime() - start;
+
+                Set<Integer> relevant = truth.get(i);
+                expected += relevant.size();
+                for (ScoredOrdinal result : found) {
+                    if (relevant.contains(result.ordinal())) {
+                        hits++;
+                    }
+                }
+            }
+            double recall = expected == 0 ? 1.0 : (double) hits / expected;
+            double meanLatencyMicros = samples == 0 ? 0 : elapsedNanos / 1_000.0 / samples;
+            rows.add(new Row(parameter, recall, meanLatencyMicros));
+        }
+        return new RecallReport(parameterName, k, samples, rows);
+    }
+
+    public String getParameterName() {
+        return parameterName;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("recall@%d over %d queries%n", k, sampleSize));
+        report.append(String.format("%10s %10s %14s%n", parameterName, "recall", "latency (us)"));
+        for (Row row : rows) {
+            report.append(String.format("%10d %10.4f %14.1f%n", row.parameter(), row.recall(), row.meanLatencyMicros()));
+        }
+        return report.toString();
+    }
+
+    private static Set<Integer> ordinals(List<ScoredOrdinal> results) {
+        Set<Integer> ordinals = new HashSet<>();
+        for (ScoredOrdinal result : results) {
+            ordinals.add(result.ordinal());
+        }
+        return ordinals;
+    }
+
+    public record Row(int parameter, double recall, double meanLatencyMicros) {
+    }
+}
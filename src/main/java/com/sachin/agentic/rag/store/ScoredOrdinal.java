@@ -0,0 +1,15 @@
+package com.sachin.agentic.rag.store;
+
+import java.util.Comparator;
+
+/**
+ * A stored vector ordinal together with its similarity to a query
+ */
+record ScoredOrdinal(int ordinal, float similarity) {
+
+    static final Comparator<ScoredOrdinal> BEST_FIRST =
+            Comparator.comparingDouble(ScoredOrdinal::similarity).reversed();
+
+    static final Comparator<ScoredOrdinal> WORST_FIRST =
+            Comparator.comparingDouble(ScoredOrdinal::similarity);
+}
@@ -0,0 +1,79 @@
+package com.sachin.agentic.rag.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits a scan over ordinals {@code [0, count)} into contiguous shards that run in parallel on
+ * a dedicated {@link ForkJoinPool}. Each shard fills its own bounded heap, and the shard heaps
+ * are merged into the final top-k, so shards never contend with each other.
+ */
+final class ShardedScanner implements AutoCloseable {
+
+    /**
+     * Below this many vectors per shard the task overhead outweighs the parallel speed-up.
+     */
+    static final int MIN_SHARD_SIZE = 4096;
+
+    private final int shards;
+    private final ForkJoinPool pool;
+
+    ShardedScanner(int shards) {
+        this.shards = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        this.pool = this.shards > 1 ? new ForkJoinPool(this.shards) : null;
+    }
+
+    int shards() {
+        return shards;
+    }
+
+    List<ScoredOrdinal> topK(int count, int k, RangeScan scan) {
+        int shardCount = Math.min(shards, Math.max(1, count / MIN_SHARD_SIZE));
+        if (shardCount == 1 || pool == null) {
+            TopK topK = new TopK(k);
+            scan.scan(0, count, topK);
+            return topK.toSortedList();
+        }
+
+        int shardSize = (count + shardCount - 1) / shardCount;
+        List<ForkJoinTask<TopK>> tasks = new ArrayList<>(shardCount);
+        for (int from = 0; from < count; from += shardSize) {
+            int start = from;
+            int end = Math.min(count, from + shardSize);
+            tasks.add(pool.submit(() -> {
+                TopK shardTopK = new TopK(k);
+                scan.scan(start, end, shardTopK);
+                return shardTopK;
+            }));
+        }
+
+        TopK merged = new TopK(k);
+        for (ForkJoinTask<TopK> task : tasks) {
+            merged.addAll(task.join());
+        }
+        return merged.toSortedList();
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Scores ordinals {@code [from, to)} into the given heap.
+     */
+    @FunctionalInterface
+    interface RangeScan {
+        void scan(int from, int to, TopK topK);
+    }
+}
@@ -0,0 +1,69 @@
+package com.sachin.agentic.rag.store;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Dot product on the JDK Vector API, only instantiated by {@link VectorMath} when the
+ * {@code jdk.incubator.vector} module is available
+ */
+final class SimdKernel implements VectorMath.Kernel {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // One byte lane per float lane, so a load of codes widens into exactly one float vector
+    private static final VectorSpecies<Byte> BYTE_SPECIES = SPECIES.length() * Byte.SIZE >= 64
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(SPECIES.length() * Byte.SIZE))
+            : null;
+
+    SimdKernel() {
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(a.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            sum = va.fma(vb, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    @Override
+    public float dot(float[] a, byte[] b) {
+        if (BYTE_SPECIES == null) {
+            return scalarDot(a, b, 0);
+        }
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(a.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = (FloatVector) ByteVector.fromArray(BYTE_SPECIES, b, i).castShape(SPECIES, 0);
+            sum = va.fma(vb, sum);
+        }
+        return sum.reduceLanes(VectorOperators.ADD) + scalarDot(a, b, i);
+    }
+
+    private static float scalarDot(float[] a, byte[] b, int from) {
+        float result = 0;
+        for (int i = from; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    @Override
+    public String name() {
+        return "SIMD (" + SPECIES.vectorBitSize() + "-bit)";
+    }
+}
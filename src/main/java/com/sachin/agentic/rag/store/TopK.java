@@ -0,0 +1,46 @@
+package com.sachin.agentic.rag.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Bounded min-heap keeping the {@code k} most similar ordinals seen so far
+ */
+final class TopK {
+    private final int k;
+    private final PriorityQueue<ScoredOrdinal> heap;
+
+    TopK(int k) {
+        this.k = k;
+        this.heap = new PriorityQueue<>(Math.max(1, k + 1), ScoredOrdinal.WORST_FIRST);
+    }
+
+    /**
+     * Whether a candidate with this similarity would currently make it into the heap.
+     */
+    boolean accepts(float similarity) {
+        return k > 0 && (heap.size() < k || similarity > heap.peek().similarity());
+    }
+
+    void offer(int ordinal, float similarity) {
+        if (accepts(similarity)) {
+            heap.add(new ScoredOrdinal(ordinal, similarity));
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+    }
+
+    void addAll(TopK other) {
+        for (ScoredOrdinal candidate : other.heap) {
+            offer(candidate.ordinal(), candidate.similarity());
+        }
+    }
+
+    List<ScoredOrdinal> toSortedList() {
+        List<ScoredOrdinal> ranked = new ArrayList<>(heap);
+        ranked.sort(ScoredOrdinal.BEST_FIRST);
+        return ranked;
+    }
+}
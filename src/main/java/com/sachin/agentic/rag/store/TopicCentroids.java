@@ -0,0 +1,87 @@
+package com.sachin.agentic.rag.store;
+
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit-length mean vectors of the stored segments, one per topic, where a segment's topic is the
+ * value of a metadata key (for ingested pages, their source URL). Comparing a query against a few
+ * centroids tells cheaply whether it is about the corpus at all.
+ */
+public class TopicCentroids {
+
+    private final List<String> topics;
+    private final List<float[]> centroids;
+    private final int storeSize;
+    private final long storeEpoch;
+
+    private TopicCentroids(List<String> topics, List<float[]> centroids, int storeSize, long storeEpoch) {
+        this.topics = topics;
+        this.centroids = centroids;
+        this.storeSize = storeSize;
+        this.storeEpoch = storeEpoch;
+    }
+
+    /**
+     * Averages every stored vector into the centroid of its topic; segments without the metadata
+     * key form one unnamed topic.
+     */
+    public static TopicCentroids compute(MappedEmbeddingStore store, String topicMetadataKey) {
+        long epoch = store.getEpoch();
+        int count = store.size();
+        Map<String, float[]> sums = new LinkedHashMap<>();
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            TextSegment segment = store.readSegment(ordinal).segment();
+            String topic = segment != null && segment.metadata().getString(topicMetadataKey) != null
+                    ? segment.metadata().getString(topicMetadataKey)
+                    : "";
+            float[] vector = store.vector(ordinal);
+            float[] sum = sums.computeIfAbsent(topic, t -> new float[vector.length]);
+            for (int i = 0; i < vector.length; i++) {
+                sum[i] += vector[i];
+            }
+        }
+
+        List<float[]> centroids = new ArrayList<>(sums.size());
+        for (float[] sum : sums.values()) {
+            centroids.add(VectorMath.normalize(sum));
+        }
+        return new TopicCentroids(List.copyOf(sums.keySet()), centroids, count, epoch);
+    }
+
+    public List<String> getTopics() {
+        return topics;
+    }
+
+    /**
+     * Number of stored vectors the centroids were computed from.
+     */
+    public int getStoreSize() {
+        return storeSize;
+    }
+
+    /**
+     * Store epoch the centroids were computed at; they are stale once the store's epoch moves on.
+     */
+    public long getStoreEpoch() {
+        return storeEpoch;
+    }
+
+    /**
+     * Highest cosine similarity between the query and any centroid, or -1 when there are none.
+     */
+    public float maxSimilarity(float[] query) {
+        float[] unit = VectorMath.normalize(query.clone());
+        float best = -1;
+        for (float[] centroid : centroids) {
+            if (centroid.length == unit.length) {
+                best = Math.max(best, VectorMath.dot(unit, centroid));
+            }
+        }
+        return best;
+    }
+}
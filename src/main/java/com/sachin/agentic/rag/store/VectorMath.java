@@ -0,0 +1,130 @@
+package com.sachin.agentic.rag.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Similarity kernels for the vector store and other code comparing embeddings.
+ * <p>
+ * Stored vectors are unit length, so cosine similarity reduces to a dot product. When the JVM is
+ * started with {@code --add-modules jdk.incubator.vector} the dot product runs on the JDK Vector
+ * API; otherwise a scalar loop is used.
+ */
+public final class VectorMath {
+    private static final Logger log = LoggerFactory.getLogger(VectorMath.class);
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String SIMD_KERNEL = "com.sachin.agentic.rag.store.SimdKernel";
+
+    private static final Kernel KERNEL = loadKernel();
+
+    private VectorMath() {
+        // Utility class
+    }
+
+    public static float dot(float[] a, float[] b) {
+        return KERNEL.dot(a, b);
+    }
+
+    /**
+     * Dot product of a float vector with signed 8-bit codes, used to score quantized vectors.
+     */
+    static float dot(float[] a, byte[] b) {
+        return KERNEL.dot(a, b);
+    }
+
+    static float scalarDot(float[] a, float[] b) {
+        return ScalarKernel.INSTANCE.dot(a, b);
+    }
+
+    /**
+     * Scales the vector to unit length in place; zero vectors are left unchanged.
+     */
+    public static float[] normalize(float[] vector) {
+        float norm = (float) Math.sqrt(dot(vector, vector));
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= norm;
+            }
+        }
+        return vector;
+    }
+
+    static String implementation() {
+        return KERNEL.name();
+    }
+
+    interface Kernel {
+        float dot(float[] a, float[] b);
+
+        float dot(float[] a, byte[] b);
+
+        String name();
+    }
+
+    private static Kernel loadKernel() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                // Loaded reflectively so this class never links against the incubator module
+                Kernel kernel = (Kernel) Class.forName(SIMD_KERNEL).getDeclaredConstructor().newInstance();
+                log.info("Using {} similarity kernel", kernel.name());
+                return kernel;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.warn("Vector API is present but could not be used, falling back to scalar kernel: {}", e.getMessage());
+            }
+        } else {
+            log.info("Using scalar similarity kernel (start the JVM with --add-modules {} to enable SIMD)", VECTOR_MODULE);
+        }
+        return ScalarKernel.INSTANCE;
+    }
+
+    private static final class ScalarKernel implements Kernel {
+        static final ScalarKernel INSTANCE = new ScalarKernel();
+
+        @Override
+        public float dot(float[] a, float[] b) {
+            // Independent accumulators let the JIT pipeline the multiply-adds
+            float s0 = 0;
+            float s1 = 0;
+            float s2 = 0;
+            float s3 = 0;
+            int i = 0;
+            int bound = a.length & ~3;
+            for (; i < bound; i += 4) {
+                s0 += a[i] * b[i];
+                s1 += a[i + 1] * b[i + 1];
+                s2 += a[i + 2] * b[i + 2];
+                s3 += a[i + 3] * b[i + 3];
+            }
+            for (; i < a.length; i++) {
+                s0 += a[i] * b[i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        @Override
+        public float dot(float[] a, byte[] b) {
+            float s0 = 0;
+            float s1 = 0;
+            float s2 = 0;
+            float s3 = 0;
+            int i = 0;
+            int bound = a.length & ~3;
+            for (; i < bound; i += 4) {
+                s0 += a[i] * b[i];
+                s1 += a[i + 1] * b[i + 1];
+                s2 += a[i + 2] * b[i + 2];
+                s3 += a[i + 3] * b[i + 3];
+            }
+            for (; i < a.length; i++) {
+                s0 += a[i] * b[i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        @Override
+        public String name() {
+            return "scalar";
+        }
+    }
+}
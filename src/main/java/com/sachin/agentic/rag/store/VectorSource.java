@@ -0,0 +1,17 @@
+package com.sachin.agentic.rag.store;
+
+/**
+ * Read access to stored vectors by ordinal, used by the search indexes over the store
+ */
+interface VectorSource {
+
+    /**
+     * Returns a heap copy of the vector stored at the given ordinal.
+     */
+    float[] vector(int ordinal);
+
+    /**
+     * Similarity between a query vector and the vector stored at the given ordinal, higher is closer.
+     */
+    float similarity(float[] query, int ordinal);
+}
@@ -9,7 +9,11 @@ import org.springframework.test.context.TestPropertySource;
 @ActiveProfiles("test")
 @TestPropertySource(properties = {
     "openai.api.key=test-key",
-    "tavily.api.key=test-key"
+    "tavily.api.key=test-key",
+    "vectorstore.path=target/test-vectorstore",
+    "embedding.cache.path=target/test-embedding-cache/embeddings.bin",
+    "grading.cache.path=target/test-grade-cache/verdicts.bin",
+    "langsmith.export.spool.path=target/test-trace-spool/runs.ndjson"
 })
 class AgenticRagApplicationTests {
 
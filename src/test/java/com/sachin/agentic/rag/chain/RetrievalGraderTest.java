@@ -0,0 +1,78 @@
+package com.sachin.agentic.rag.chain;
+
+import com.sachin.agentic.rag.config.ChatModelFactory;
+import com.sachin.agentic.rag.model.GradeDocuments;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Parses batch grading responses the way models actually return them; no model is called.
+ */
+class RetrievalGraderTest {
+
+    private final RetrievalGrader grader = new RetrievalGrader(chatModelFactory());
+
+    @Test
+    void parsesUnfencedResponseInDocumentOrder() {
+        List<GradeDocuments> grades = grader.parseBatch("""
+                {"grades": [{"index": 1, "binaryScore": "no"}, {"index": 0, "binaryScore": "YES"}]}
+                """, 2);
+
+        assertThat(scores(grades)).isEqualTo(List.of("yes", "no"));
+    }
+
+    @Test
+    void parsesResponseWrappedInCodeFence() {
+        List<GradeDocuments> grades = grader.parseBatch("""
+                ```json
+                {"grades": [{"index": 0, "binaryScore": "no"}, {"index": 1, "binaryScore": "yes"}]}
+                ```
+                """, 2);
+
+        assertThat(scores(grades)).isEqualTo(List.of("no", "yes"));
+    }
+
+    @Test
+    void rejectsUnterminatedCodeFence() {
+        assertThatThrownBy(() -> grader.parseBatch("```json\n{\"grades\": []}", 1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("unterminated code fence");
+    }
+
+    @Test
+    void rejectsResponseGradingTooFewDocuments() {
+        assertThatThrownBy(() -> grader.parseBatch("""
+                {"grades": [{"index": 0, "binaryScore": "yes"}]}
+                """, 3))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("graded 1 of 3 documents");
+    }
+
+    @Test
+    void rejectsResponseGradingTooManyDocuments() {
+        assertThatThrownBy(() -> grader.parseBatch("""
+                {"grades": [{"index": 0, "binaryScore": "yes"}, {"index": 1, "binaryScore": "no"}]}
+                """, 1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("unexpected index 1");
+    }
+
+    private static List<String> scores(List<GradeDocuments> grades) {
+        return grades.stream().map(GradeDocuments::getBinaryScore).toList();
+    }
+
+    private static ChatModelFactory chatModelFactory() {
+        ChatModelFactory factory = new ChatModelFactory(new MockEnvironment(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(factory, "apiKey", "test-key");
+        ReflectionTestUtils.setField(factory, "baseUrl", "http://localhost:1");
+        ReflectionTestUtils.setField(factory, "timeoutSeconds", 1);
+        return factory;
+    }
+}
@@ -0,0 +1,144 @@
+package com.sachin.agentic.rag.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs ingestion-style embedding against a local stand-in for the OpenAI embeddings endpoint
+ * that adds a fixed latency to every request, the cost that dominates real ingestion.
+ */
+class EmbeddingBatchServiceTest {
+
+    private static final long REQUEST_LATENCY_MILLIS = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private EmbeddingModel embeddingModel;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/embeddings", this::embeddings);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+
+        embeddingModel = OpenAiEmbeddingModel.builder()
+                .baseUrl("http://localhost:" + server.getAddress().getPort() + "/v1/")
+                .apiKey("test-key")
+                .modelName("text-embedding-ada-002")
+                .maxRetries(0)
+                .build();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void batchesKeepSegmentOrder() {
+        List<TextSegment> segments = segments(1000);
+        EmbeddingBatchService service = new EmbeddingBatchService(embeddingModel, 64, 100_000, 4);
+
+        List<Embedding> embeddings = service.embedAll(segments);
+
+        assertThat(embeddings).hasSize(segments.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            assertThat(embeddings.get(i).vector()[0]).isEqualTo(i);
+        }
+        assertThat(requests.get()).isEqualTo(16);
+    }
+
+    @Test
+    void batchesRespectTokenBudget() {
+        // "segment 123" is 11 characters, so roughly 3 tokens per segment
+        EmbeddingBatchService service = new EmbeddingBatchService(embeddingModel, 1000, 30, 1);
+
+        List<List<TextSegment>> batches = service.batches(segments(100));
+
+        assertThat(batches).allSatisfy(batch -> assertThat(batch.size()).isLessThanOrEqualTo(10));
+        assertThat(batches.stream().mapToInt(List::size).sum()).isEqualTo(100);
+    }
+
+    @Test
+    void batchedEmbeddingSendsOneRequestPerBatch() {
+        EmbeddingBatchService service = new EmbeddingBatchService(embeddingModel, 512, 100_000, 4);
+
+        service.embedAll(segments(2000));
+
+        // Ingestion used to send one request per segment; 2000 segments now take four
+        assertThat(requests.get()).isEqualTo(4);
+        assertThat(batchSizes).containsExactlyInAnyOrder(512, 512, 512, 464);
+    }
+
+    private void embeddings(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        JsonNode input = request.get("input");
+        batchSizes.add(input.size());
+
+        // Each embedding carries the number in its segment text, so tests can check ordering
+        List<Map<String, Object>> data = new ArrayList<>();
+        int tokens = 0;
+        for (int i = 0; i < input.size(); i++) {
+            String text = input.get(i).asText();
+            tokens += text.length() / 4 + 1;
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("object", "embedding");
+            item.put("index", i);
+            item.put("embedding", List.of(Float.parseFloat(text.substring(text.indexOf(' ') + 1)), 1.0f, 0.5f));
+            data.add(item);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("object", "list");
+        response.put("data", data);
+        response.put("model", request.get("model").asText());
+        response.put("usage", Map.of("prompt_tokens", tokens, "total_tokens", tokens));
+        byte[] body = objectMapper.writeValueAsString(response).getBytes(StandardCharsets.UTF_8);
+
+        try {
+            Thread.sleep(REQUEST_LATENCY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static List<TextSegment> segments(int count) {
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(TextSegment.from("segment " + i));
+        }
+        return segments;
+    }
+}
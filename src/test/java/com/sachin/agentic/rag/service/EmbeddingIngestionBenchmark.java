@@ -0,0 +1,144 @@
+package com.sachin.agentic.rag.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ingestion throughput, in segments per second, of one embedding request per segment, as
+ * ingestion used to do, with {@link EmbeddingBatchService}. Both run against a local stand-in for the
+ * OpenAI embeddings endpoint that adds a fixed latency to every request. Not part of the test run;
+ * start it with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class EmbeddingIngestionBenchmark {
+
+    private static final int SEGMENTS = 500;
+
+    @Param({"10", "50"})
+    public long requestLatencyMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpServer server;
+    private EmbeddingModel embeddingModel;
+    private EmbeddingBatchService batchService;
+    private List<TextSegment> segments;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/embeddings", this::embeddings);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+
+        embeddingModel = OpenAiEmbeddingModel.builder()
+                .baseUrl("http://localhost:" + server.getAddress().getPort() + "/v1/")
+                .apiKey("test-key")
+                .modelName("text-embedding-ada-002")
+                .maxRetries(0)
+                .build();
+        // Small batches, so the batched run still sends several requests concurrently
+        batchService = new EmbeddingBatchService(embeddingModel, 64, 100_000, 4);
+
+        segments = new ArrayList<>(SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments.add(TextSegment.from("segment " + i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEGMENTS)
+    public List<Embedding> perSegment() {
+        List<Embedding> embeddings = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) {
+            embeddings.add(embeddingModel.embed(segment).content());
+        }
+        return embeddings;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEGMENTS)
+    public List<Embedding> batched() {
+        return batchService.embedAll(segments);
+    }
+
+    private void embeddings(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        JsonNode input = request.get("input");
+
+        List<Map<String, Object>> data = new ArrayList<>();
+        int tokens = 0;
+        for (int i = 0; i < input.size(); i++) {
+            tokens += input.get(i).asText().length() / 4 + 1;
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("object", "embedding");
+            item.put("index", i);
+            item.put("embedding", List.of(1.0f, 0.5f, 0.25f));
+            data.add(item);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("object", "list");
+        response.put("data", data);
+        response.put("model", request.get("model").asText());
+        response.put("usage", Map.of("prompt_tokens", tokens, "total_tokens", tokens));
+        byte[] body = objectMapper.writeValueAsString(response).getBytes(StandardCharsets.UTF_8);
+
+        try {
+            Thread.sleep(requestLatencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EmbeddingIngestionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
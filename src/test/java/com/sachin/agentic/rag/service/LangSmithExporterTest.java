@@ -0,0 +1,261 @@
+package com.sachin.agentic.rag.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sachin.agentic.rag.config.LangSmithConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exports runs to a local stand-in for the LangSmith batch endpoint that records what it receives.
+ */
+class LangSmithExporterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<JsonNode> batches = new CopyOnWriteArrayList<>();
+    private final Map<String, JsonNode> runs = new ConcurrentHashMap<>();
+    private final CountDownLatch firstRequest = new CountDownLatch(1);
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private volatile boolean down;
+    private volatile int downStatus = 503;
+    private HttpServer server;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/runs/batch", this::batch);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void sendsQueuedRunsInGzippedBatchesAndFlushesOnClose() {
+        LangSmithExporter exporter = exporter(1000, 10, "newest");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 25; i++) {
+            exporter.create(run(i));
+            exporter.update(Map.of("id", "run-" + i, "outputs", Map.of("answer", i)));
+        }
+        long enqueueMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        exporter.close();
+
+        assertThat(enqueueMillis).isLessThan(500);
+        assertThat(batches).allSatisfy(batch -> assertThat(batch.get("post").size() + batch.get("patch").size())
+                .isLessThanOrEqualTo(10));
+        assertThat(runs).hasSize(25);
+        // Every run arrives with its outputs, whether the update was folded into the creation or patched later
+        assertThat(runs.values()).allSatisfy(run -> assertThat(run.has("outputs")).isTrue());
+        assertThat(meterRegistry.counter("langsmith.export.runs", "result", "sent").count()).isEqualTo(50);
+    }
+
+    @Test
+    void dropsNewestRunsWhenQueueIsFull() throws InterruptedException {
+        release = new CountDownLatch(1);
+        LangSmithExporter exporter = exporter(5, 1, "newest");
+
+        exporter.create(run(0));
+        assertThat(firstRequest.await(5, TimeUnit.SECONDS)).isTrue();
+        // The worker is stuck sending run 0, so the queue fills up behind it
+        for (int i = 1; i <= 8; i++) {
+            exporter.create(run(i));
+        }
+        release.countDown();
+        exporter.close();
+
+        assertThat(meterRegistry.counter("langsmith.export.dropped", "reason", "queue_full", "policy", "newest")
+                .count()).isEqualTo(3);
+        assertThat(runs.keySet()).containsExactlyInAnyOrder("run-0", "run-1", "run-2", "run-3", "run-4", "run-5");
+    }
+
+    @Test
+    void dropsOldestRunsWhenConfigured() throws InterruptedException {
+        release = new CountDownLatch(1);
+        LangSmithExporter exporter = exporter(5, 1, "oldest");
+
+        exporter.create(run(0));
+        assertThat(firstRequest.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= 8; i++) {
+            exporter.create(run(i));
+        }
+        release.countDown();
+        exporter.close();
+        exporter.create(run(9));
+
+        assertThat(meterRegistry.counter("langsmith.export.dropped", "reason", "queue_full", "policy", "oldest")
+                .count()).isEqualTo(3);
+        assertThat(meterRegistry.counter("langsmith.export.dropped", "reason", "closed", "policy", "oldest")
+                .count()).isEqualTo(1);
+        assertThat(runs.keySet()).containsExactlyInAnyOrder("run-0", "run-4", "run-5", "run-6", "run-7", "run-8");
+    }
+
+    @Test
+    void spoolsRunsWhileLangSmithIsDownAndReplaysThemWhenItRecovers() throws Exception {
+        down = true;
+        LangSmithExporter exporter = exporter(1000, 5, "newest", directory.resolve("runs.ndjson"));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            exporter.create(run(i));
+            exporter.update(Map.of("id", "run-" + i, "outputs", Map.of("answer", i)));
+        }
+        long enqueueMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        awaitCount("langsmith.export.spool.runs", "result", "spooled", 40);
+        assertThat(runs).isEmpty();
+
+        down = false;
+        awaitCount("langsmith.export.spool.runs", "result", "replayed", 40);
+        exporter.close();
+
+        assertThat(enqueueMillis).isLessThan(500);
+        assertThat(runs).hasSize(20);
+        assertThat(runs.values()).allSatisfy(run -> assertThat(run.has("outputs")).isTrue());
+        assertThat(Files.size(directory.resolve("runs.ndjson"))).isEqualTo(0L);
+    }
+
+    @Test
+    void replaysRunsSpooledBeforeRestart() throws Exception {
+        down = true;
+        Path spool = directory.resolve("runs.ndjson");
+        LangSmithExporter exporter = exporter(1000, 10, "newest", spool);
+        for (int i = 0; i < 3; i++) {
+            exporter.create(run(i));
+        }
+        exporter.close();
+        assertThat(runs).isEmpty();
+        assertThat(Files.size(spool)).isGreaterThan(0L);
+
+        down = false;
+        LangSmithExporter restarted = exporter(1000, 10, "newest", spool);
+        awaitCount("langsmith.export.spool.runs", "result", "replayed", 3);
+        restarted.close();
+
+        assertThat(runs.keySet()).containsExactlyInAnyOrder("run-0", "run-1", "run-2");
+    }
+
+    @Test
+    void spoolsRunsRejectedForAuthenticationAndReplaysThemOnceAccepted() throws Exception {
+        down = true;
+        downStatus = 401;
+        LangSmithExporter exporter = exporter(1000, 5, "newest", directory.resolve("runs.ndjson"));
+        for (int i = 0; i < 5; i++) {
+            exporter.create(run(i));
+        }
+        awaitCount("langsmith.export.spool.runs", "result", "spooled", 5);
+        assertThat(runs).isEmpty();
+
+        down = false;
+        awaitCount("langsmith.export.spool.runs", "result", "replayed", 5);
+        exporter.close();
+
+        assertThat(runs).hasSize(5);
+    }
+
+    @Test
+    void opensNoSpoolWhenTracingIsNotConfigured() {
+        Path spool = directory.resolve("spool").resolve("runs.ndjson");
+        LangSmithConfig config = new LangSmithConfig();
+        ReflectionTestUtils.setField(config, "endpoint", "http://localhost:" + server.getAddress().getPort());
+
+        new LangSmithExporter(config, 1000, 10, 50, true, "newest", spool.toString(), 1 << 20, 20, 100,
+                meterRegistry).close();
+
+        assertThat(Files.exists(spool.getParent())).isFalse();
+    }
+
+    private LangSmithExporter exporter(int queueCapacity, int batchSize, String dropPolicy) {
+        return exporter(queueCapacity, batchSize, dropPolicy, null);
+    }
+
+    private LangSmithExporter exporter(int queueCapacity, int batchSize, String dropPolicy, Path spool) {
+        LangSmithConfig config = new LangSmithConfig();
+        ReflectionTestUtils.setField(config, "endpoint", "http://localhost:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(config, "tracingEnabled", true);
+        ReflectionTestUtils.setField(config, "apiKey", "test-key");
+        return new LangSmithExporter(config, queueCapacity, batchSize, 50, true, dropPolicy,
+                spool == null ? "" : spool.toString(), 1 << 20, 20, 100, meterRegistry);
+    }
+
+    private void awaitCount(String name, String tag, String value, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.counter(name, tag, value).count() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(meterRegistry.counter(name, tag, value).count()).isEqualTo(expected);
+    }
+
+    private static Map<String, Object> run(int i) {
+        Map<String, Object> run = new HashMap<>();
+        run.put("id", "run-" + i);
+        run.put("name", "Run " + i);
+        run.put("inputs", Map.of("question", "question " + i));
+        return run;
+    }
+
+    private void batch(HttpExchange exchange) throws IOException {
+        assertThat(exchange.getRequestHeaders().getFirst("Content-Encoding")).isEqualTo("gzip");
+        assertThat(exchange.getRequestHeaders().getFirst("x-api-key")).isEqualTo("test-key");
+        JsonNode batch;
+        try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+            batch = objectMapper.readTree(in);
+        }
+        if (down) {
+            exchange.sendResponseHeaders(downStatus, -1);
+            exchange.close();
+            return;
+        }
+        firstRequest.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        batches.add(batch);
+        for (JsonNode run : batch.get("post")) {
+            runs.put(run.get("id").asText(), run);
+        }
+        for (JsonNode patch : batch.get("patch")) {
+            runs.computeIfPresent(patch.get("id").asText(), (id, run) -> {
+                ((ObjectNode) run).setAll((ObjectNode) patch);
+                return run;
+            });
+        }
+        exchange.sendResponseHeaders(202, -1);
+        exchange.close();
+    }
+}
@@ -0,0 +1,156 @@
+package com.sachin.agentic.rag.service;
+
+import com.sachin.agentic.rag.config.LangSmithConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Records what a workflow's trace hands to the exporter under different sampling settings.
+ */
+class TraceTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Map<String, Object>> created = new CopyOnWriteArrayList<>();
+    private final List<Map<String, Object>> updated = new CopyOnWriteArrayList<>();
+    private final AtomicInteger mapsBuilt = new AtomicInteger();
+
+    @Test
+    void headSampledTraceExportsRunsAsTheyHappen() {
+        LangSmithTracingService tracing = tracing(1.0, true, 10_000);
+
+        Trace trace = tracing.startTrace("Workflow", map("question", "q"));
+        Trace.Span span = trace.startSpan("retriever", "Retrieve", map("question", "q"));
+        assertThat(created).hasSize(2);
+
+        span.end(map("num_documents", 3));
+        trace.end(map("answer", "a"), null);
+
+        assertThat(updated).hasSize(2);
+        assertThat(created.get(1).get("parent_run_id")).isEqualTo(created.get(0).get("id"));
+        assertThat(sampling(created.get(0))).isEqualTo("head");
+        assertThat(count("head_sampled")).isEqualTo(1);
+    }
+
+    @Test
+    void headSampledTraceEndsSpansLeftOpenByAFailedNode() {
+        LangSmithTracingService tracing = tracing(1.0, true, 10_000);
+
+        Trace trace = tracing.startTrace("Workflow", map("question", "q"));
+        trace.startSpan("retriever", "Retrieve", map("question", "q"));
+        trace.end(map("question", "q"), "IllegalStateException: boom");
+
+        assertThat(updated).hasSize(2);
+        assertThat(updated.get(0).get("id")).isEqualTo(created.get(1).get("id"));
+        assertThat(updated.get(0).get("error")).isEqualTo("Run did not complete");
+        assertThat(updated.get(0).get("dotted_order")).isEqualTo(created.get(1).get("dotted_order"));
+        assertThat(updated.get(1).get("trace_id")).isEqualTo(created.get(0).get("id"));
+    }
+
+    @Test
+    void unsampledTraceThatIsFastAndSuccessfulBuildsNoRunMaps() {
+        LangSmithTracingService tracing = tracing(0.0, true, 10_000);
+
+        Trace trace = tracing.startTrace("Workflow", map("question", "q"));
+        trace.startSpan("retriever", "Retrieve", map("question", "q")).end(map("num_documents", 3));
+        trace.end(map("answer", "a"), null);
+
+        assertThat(created).isEmpty();
+        assertThat(updated).isEmpty();
+        assertThat(mapsBuilt.get()).isEqualTo(0);
+        assertThat(count("dropped")).isEqualTo(1);
+    }
+
+    @Test
+    void tailSamplingKeepsRegeneratedFailedAndSlowTraces() {
+        LangSmithTracingService tracing = tracing(0.0, true, 10_000);
+
+        Trace regenerated = tracing.startTrace("Workflow", map("question", "q"));
+        regenerated.startSpan("llm", "Generate", map("question", "q")).end(map("generation", "g1"));
+        regenerated.keep("regenerated");
+        regenerated.startSpan("llm", "Generate", map("question", "q")).end(map("generation", "g2"));
+        regenerated.end(map("answer", "g2"), null);
+
+        assertThat(created).hasSize(3);
+        assertThat(sampling(created.get(0))).isEqualTo("tail:regenerated");
+        assertThat(created.get(2).get("parent_run_id")).isEqualTo(created.get(0).get("id"));
+        assertThat(updated.get(1).get("outputs")).isEqualTo(Map.of("generation", "g2"));
+
+        Trace failed = tracing.startTrace("Workflow", map("question", "q"));
+        failed.end(map("question", "q"), "IllegalStateException: boom");
+        assertThat(sampling(created.get(3))).isEqualTo("tail:error");
+        assertThat(updated.get(updated.size() - 1).get("error")).isEqualTo("IllegalStateException: boom");
+
+        LangSmithTracingService slowTracing = tracing(0.0, true, 0);
+        slowTracing.startTrace("Workflow", map("question", "q")).end(map("answer", "a"), null);
+        assertThat(sampling(created.get(created.size() - 1))).isEqualTo("tail:slow");
+        assertThat(count("tail_kept")).isEqualTo(3);
+    }
+
+    @Test
+    void unsampledTraceWithoutTailSamplingRecordsNothing() {
+        LangSmithTracingService tracing = tracing(0.0, false, 0);
+
+        Trace trace = tracing.startTrace("Workflow", map("question", "q"));
+        trace.keep("regenerated");
+        trace.end(map("answer", "a"), "IllegalStateException: boom");
+
+        assertThat(trace).isEqualTo(Trace.NOOP);
+        assertThat(created).isEmpty();
+        assertThat(mapsBuilt.get()).isEqualTo(0);
+    }
+
+    private LangSmithTracingService tracing(double rate, boolean tail, long slowThresholdMillis) {
+        LangSmithConfig config = new LangSmithConfig();
+        ReflectionTestUtils.setField(config, "tracingEnabled", true);
+        ReflectionTestUtils.setField(config, "endpoint", "http://localhost:1");
+        ReflectionTestUtils.setField(config, "apiKey", "test-key");
+        ReflectionTestUtils.setField(config, "project", "test");
+        ReflectionTestUtils.setField(config, "samplingRate", rate);
+        ReflectionTestUtils.setField(config, "tailSamplingEnabled", tail);
+        ReflectionTestUtils.setField(config, "slowThresholdMillis", slowThresholdMillis);
+
+        LangSmithExporter exporter = new LangSmithExporter(config, 10, 10, 1000, true, "newest", "", 0,
+                1000, 1000, meterRegistry) {
+            @Override
+            public void create(Map<String, Object> run) {
+                created.add(run);
+            }
+
+            @Override
+            public void update(Map<String, Object> update) {
+                updated.add(update);
+            }
+        };
+        return new LangSmithTracingService(config, exporter, meterRegistry);
+    }
+
+    private Supplier<Map<String, Object>> map(String key, Object value) {
+        return () -> {
+            mapsBuilt.incrementAndGet();
+            Map<String, Object> map = new HashMap<>();
+            map.put(key, value);
+            return map;
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object sampling(Map<String, Object> run) {
+        Map<String, Object> extra = (Map<String, Object>) run.get("extra");
+        return ((Map<String, Object>) extra.get("metadata")).get("sampling");
+    }
+
+    private double count(String decision) {
+        return meterRegistry.counter("langsmith.sampling.traces", "decision", decision).count();
+    }
+}
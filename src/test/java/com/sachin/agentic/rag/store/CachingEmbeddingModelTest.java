@@ -0,0 +1,148 @@
+package com.sachin.agentic.rag.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the embedding cache survives a restart, recovers from a torn write and keeps models apart.
+ */
+class CachingEmbeddingModelTest {
+
+    private static final int DIMENSION = 4;
+    private static final long RECORD_BYTES = 32 + Integer.BYTES + DIMENSION * Float.BYTES;
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger embedded = new AtomicInteger();
+    private final EmbeddingModel model = segments -> {
+        List<Embedding> embeddings = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) {
+            embedded.incrementAndGet();
+            embeddings.add(embedding(segment.text()));
+        }
+        return Response.from(embeddings);
+    };
+
+    @Test
+    void reopenedCacheServesEarlierEmbeddings() throws IOException {
+        Path file = dir.resolve("embeddings.bin");
+        try (CachingEmbeddingModel cache = open(model, "model-a", file)) {
+            cache.embedAll(segments("alpha", "beta", "gamma"));
+        }
+        assertThat(embedded.get()).isEqualTo(3);
+
+        try (CachingEmbeddingModel cache = open(model, "model-a", file)) {
+            List<Embedding> embeddings = cache.embedAll(segments("alpha", "beta", "gamma")).content();
+
+            assertThat(cache.size()).isEqualTo(3);
+            assertThat(embedded.get()).isEqualTo(3);
+            assertThat(embeddings.get(1).vector()).isEqualTo(embedding("beta").vector());
+        }
+    }
+
+    @Test
+    void tornRecordIsTruncatedOnOpen() throws IOException {
+        Path file = dir.resolve("embeddings.bin");
+        try (CachingEmbeddingModel cache = open(model, "model-a", file)) {
+            cache.embedAll(segments("alpha", "beta"));
+        }
+        long complete = Files.size(file);
+        // A record cut off after its key and part of its vector, as a crash mid-write would leave it
+        Files.write(file, new byte[40], StandardOpenOption.APPEND);
+
+        try (CachingEmbeddingModel cache = open(model, "model-a", file)) {
+            assertThat(cache.size()).isEqualTo(2);
+            assertThat(Files.size(file)).isEqualTo(complete);
+
+            cache.embedAll(segments("gamma"));
+        }
+        try (CachingEmbeddingModel cache = open(model, "model-a", file)) {
+            assertThat(cache.size()).isEqualTo(3);
+            assertThat(cache.embedAll(segments("gamma")).content().get(0).vector())
+                    .isEqualTo(embedding("gamma").vector());
+        }
+        assertThat(embedded.get()).isEqualTo(3);
+    }
+
+    @Test
+    void differentModelIdMisses() throws IOException {
+        Path file = dir.resolve("embeddings.bin");
+        try (CachingEmbeddingModel cache = open(model, "model-a", file)) {
+            cache.embedAll(segments("alpha"));
+        }
+        try (CachingEmbeddingModel cache = open(model, "model-b", file)) {
+            cache.embedAll(segments("alpha"));
+            assertThat(cache.size()).isEqualTo(2);
+        }
+        assertThat(embedded.get()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentMissesOnTheSameTextWriteOneRecord() throws Exception {
+        Path file = dir.resolve("embeddings.bin");
+        CountDownLatch bothMissed = new CountDownLatch(2);
+        EmbeddingModel slow = segments -> {
+            bothMissed.countDown();
+            try {
+                bothMissed.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return model.embedAll(segments);
+        };
+
+        try (CachingEmbeddingModel cache = open(slow, "model-a", file);
+             ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<?> first = executor.submit(() -> cache.embedAll(segments("alpha")));
+            Future<?> second = executor.submit(() -> cache.embedAll(segments("alpha")));
+            first.get();
+            second.get();
+
+            assertThat(embedded.get()).isEqualTo(2);
+            assertThat(cache.size()).isEqualTo(1);
+        }
+        assertThat(Files.size(file)).isEqualTo(8 + RECORD_BYTES);
+    }
+
+    private static CachingEmbeddingModel open(EmbeddingModel delegate, String modelId, Path file)
+            throws IOException {
+        return new CachingEmbeddingModel(delegate, modelId, file, new SimpleMeterRegistry());
+    }
+
+    private static List<TextSegment> segments(String... texts) {
+        List<TextSegment> segments = new ArrayList<>(texts.length);
+        for (String text : texts) {
+            segments.add(TextSegment.from(text));
+        }
+        return segments;
+    }
+
+    private static Embedding embedding(String text) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = text.hashCode() % (i + 7);
+        }
+        return Embedding.from(vector);
+    }
+}
@@ -0,0 +1,127 @@
+package com.sachin.agentic.rag.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Times a full EXACT-mode search over a populated store with the scalar and the SIMD kernel. The kernel
+ * is chosen once per JVM, so each runs in its own fork, with and without the vector module; the fork
+ * arguments are set rather than appended so the launching JVM's flags cannot switch kernels. Not part of
+ * the test run; start it with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ExactSearchBenchmark {
+
+    private static final int DIMENSION = 384;
+    private static final int BATCH = 10_000;
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    /**
+     * Zero splits the scan into one shard per core, as the store does by default.
+     */
+    @Param({"1", "0"})
+    public int searchShards;
+
+    private Path directory;
+    private MappedEmbeddingStore store;
+    private EmbeddingSearchRequest request;
+
+    @Setup
+    public void setUp(BenchmarkParams params) throws IOException {
+        boolean simd = params.getBenchmark().endsWith(".simd");
+        if (simd != VectorMath.implementation().startsWith("SIMD")) {
+            throw new IllegalStateException("Expected the " + (simd ? "SIMD" : "scalar") + " kernel but this JVM uses "
+                    + VectorMath.implementation());
+        }
+
+        directory = Files.createTempDirectory("exact-search-benchmark");
+        store = MappedEmbeddingStore.builder()
+                .directory(directory)
+                .searchMode(MappedEmbeddingStore.SearchMode.EXACT)
+                .searchShards(searchShards)
+                .build();
+        Random random = new Random(42);
+        for (int added = 0; added < size; added += BATCH) {
+            int count = Math.min(BATCH, size - added);
+            List<Embedding> embeddings = new ArrayList<>(count);
+            List<TextSegment> segments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                embeddings.add(Embedding.from(randomVector(random)));
+                segments.add(TextSegment.from("segment " + (added + i)));
+            }
+            store.addAll(embeddings, segments);
+        }
+        request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(randomVector(random)))
+                .maxResults(5)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgs = "-Xmx2g")
+    public List<EmbeddingMatch<TextSegment>> scalar() {
+        return store.search(request).matches();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgs = {"-Xmx2g", "--add-modules=jdk.incubator.vector"})
+    public List<EmbeddingMatch<TextSegment>> simd() {
+        return store.search(request).matches();
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ExactSearchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,247 @@
+package com.sachin.agentic.rag.store;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedEmbeddingStoreTest {
+
+    private static final int DIMENSION = 32;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopensWithStoredSegments() throws Exception {
+        List<Embedding> embeddings = randomEmbeddings(500, new Random(1));
+        List<TextSegment> segments = segments(embeddings.size());
+
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.builder().directory(directory).build()) {
+            store.addAll(embeddings, segments);
+        }
+
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.builder().directory(directory).build()) {
+            assertThat(store.size()).isEqualTo(500);
+
+            List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(embeddings.get(42))
+                    .maxResults(3)
+                    .build()).matches();
+
+            assertThat(matches).hasSize(3);
+            assertThat(matches.get(0).embedded().text()).isEqualTo("segment 42");
+            assertThat(matches.get(0).embedded().metadata().getString("url")).isEqualTo("https://example.com/42");
+            assertThat(matches.get(0).score()).isGreaterThan(0.99);
+        }
+    }
+
+    @Test
+    void rejectsVectorsFromAnotherEmbeddingModel() throws Exception {
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.builder()
+                .directory(directory)
+                .embeddingModelId("openai:text-embedding-ada-002")
+                .build()) {
+            store.addAll(randomEmbeddings(10, new Random(5)), segments(10));
+        }
+
+        assertThatThrownBy(() -> MappedEmbeddingStore.builder()
+                .directory(directory)
+                .embeddingModelId("local:all-minilm-l6-v2")
+                .build())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("text-embedding-ada-002");
+    }
+
+    @Test
+    void hnswRecallIsCloseToExactSearch() throws Exception {
+        List<Embedding> embeddings = randomEmbeddings(3000, new Random(7));
+
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.builder()
+                .directory(directory)
+                .searchMode(MappedEmbeddingStore.SearchMode.HNSW)
+                .build()) {
+            store.addAll(embeddings, segments(embeddings.size()));
+
+            RecallReport report = store.recallReport(10, 100, 16, 64, 128);
+
+            assertThat(report.getRows()).hasSize(3);
+            assertThat(report.getRows().get(2).recall()).isGreaterThan(0.9);
+        }
+    }
+
+    @Test
+    void quantizedSearchReRanksToExactResults() throws Exception {
+        List<Embedding> embeddings = randomEmbeddings(2000, new Random(3));
+
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.builder()
+                .directory(directory)
+                .quantization(true)
+                .build()) {
+            store.addAll(embeddings, segments(embeddings.size()));
+
+            RecallReport report = store.quantizationRecallReport(4, 100, 1, 4);
+
+            assertThat(report.getRows().get(1).recall()).isGreaterThan(0.95);
+            assertThat(store.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(embeddings.get(7))
+                    .maxResults(1)
+                    .build()).matches().get(0).embedded().text()).isEqualTo("segment 7");
+        }
+    }
+
+    @Test
+    void searchesDuringRemoveAllSeeEitherTheOldOrTheNewContent() throws Exception {
+        List<Embedding> embeddings = randomEmbeddings(1000, new Random(11));
+        List<TextSegment> segments = segments(embeddings.size());
+
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.builder()
+                .directory(directory)
+                .quantization(true)
+                .build()) {
+            store.addAll(embeddings, segments);
+
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+                for (int t = 0; t < 4; t++) {
+                    executor.submit(() -> {
+                        while (!done.get()) {
+                            try {
+                                store.search(EmbeddingSearchRequest.builder()
+                                        .queryEmbedding(embeddings.get(1))
+                                        .maxResults(5)
+                                        .build());
+                            } catch (Throwable e) {
+                                failure.compareAndSet(null, e);
+                            }
+                        }
+                    });
+                }
+                for (int round = 0; round < 20; round++) {
+                    store.removeAll();
+                    store.addAll(embeddings, segments);
+                }
+                done.set(true);
+            }
+
+            assertThat(failure.get()).isNull();
+        }
+    }
+
+    @Test
+    void addsRacingRemoveAllNeitherDeadlockNorFail() throws Exception {
+        List<Embedding> embeddings = randomEmbeddings(200, new Random(13));
+        List<TextSegment> segments = segments(embeddings.size());
+
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.builder()
+                .directory(directory)
+                .searchMode(MappedEmbeddingStore.SearchMode.HNSW)
+                .quantization(true)
+                .build()) {
+            List<Future<?>> tasks = new ArrayList<>();
+            // Daemon threads and no close(), so a deadlocked run fails the test instead of hanging it
+            ExecutorService executor = Executors.newFixedThreadPool(3, Thread.ofPlatform().daemon().factory());
+            try {
+                for (int t = 0; t < 2; t++) {
+                    tasks.add(executor.submit(() -> {
+                        for (int round = 0; round < 30; round++) {
+                            store.addAll(embeddings, segments);
+                        }
+                    }));
+                }
+                tasks.add(executor.submit(() -> {
+                    for (int round = 0; round < 30; round++) {
+                        store.removeAll();
+                    }
+                }));
+                for (Future<?> task : tasks) {
+                    task.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(store.size() % embeddings.size()).isEqualTo(0);
+            store.removeAll();
+            store.addAll(embeddings, segments);
+            List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(embeddings.get(3))
+                    .maxResults(1)
+                    .build()).matches();
+            assertThat(matches.get(0).embedded().text()).isEqualTo("segment 3");
+        }
+    }
+
+    @Test
+    void ignoresGraphFromBeforeRemoveAll() throws Exception {
+        Path graphFile = directory.resolve("hnsw.graph");
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.builder()
+                .directory(directory)
+                .searchMode(MappedEmbeddingStore.SearchMode.HNSW)
+                .build()) {
+            store.addAll(randomEmbeddings(300, new Random(17)), segments(300));
+        }
+        byte[] staleGraph = Files.readAllBytes(graphFile);
+
+        List<Embedding> embeddings = randomEmbeddings(300, new Random(19));
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.builder().directory(directory).build()) {
+            store.removeAll();
+            assertThat(Files.exists(graphFile)).isFalse();
+            store.addAll(embeddings, segments(embeddings.size()));
+        }
+        // Simulates a graph file left behind by a store that cleared without deleting it
+        Files.write(graphFile, staleGraph);
+
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.builder()
+                .directory(directory)
+                .searchMode(MappedEmbeddingStore.SearchMode.HNSW)
+                .build()) {
+            for (int i = 0; i < embeddings.size(); i++) {
+                List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(embeddings.get(i))
+                        .maxResults(1)
+                        .build()).matches();
+                assertThat(matches.get(0).embedded().text()).isEqualTo("segment " + i);
+            }
+        }
+    }
+
+    private static List<Embedding> randomEmbeddings(int count, Random random) {
+        List<Embedding> embeddings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            embeddings.add(Embedding.from(vector));
+        }
+        return embeddings;
+    }
+
+    private static List<TextSegment> segments(int count) {
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(TextSegment.from("segment " + i, Metadata.from("url", "https://example.com/" + i)));
+        }
+        return segments;
+    }
+}